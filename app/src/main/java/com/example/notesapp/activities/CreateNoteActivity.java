@@ -8,19 +8,17 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import android.Manifest;
-import android.annotation.SuppressLint;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.GradientDrawable;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.provider.MediaStore;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Patterns;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -32,26 +30,36 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.notesapp.R;
-import com.example.notesapp.database.NotesDatabase;
 import com.example.notesapp.entities.Note;
+import com.example.notesapp.entities.NoteRevisionSummary;
+import com.example.notesapp.images.AspectRatioImageView;
+import com.example.notesapp.images.EditorImageLoader;
+import com.example.notesapp.images.ImageInfo;
+import com.example.notesapp.images.ImageStore;
+import com.example.notesapp.images.ThumbnailLoader;
+import com.example.notesapp.repository.NoteAutosaver;
+import com.example.notesapp.repository.NotesRepository;
+import com.example.notesapp.revisions.RevisionStore;
+import com.example.notesapp.utilities.NoteDates;
 import com.google.android.material.bottomsheet.BottomSheetBehavior;
 
-import java.io.InputStream;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.util.List;
+
 
 public class CreateNoteActivity extends AppCompatActivity {
 
     private EditText inputNoteTitle, inputNoteSubtitle, inputNoteText;
     private TextView textDateTime;
     private View viewSubtitleIndicator;
-    private ImageView imageNote;
+    private AspectRatioImageView imageNote;
+    private EditorImageLoader editorImageLoader;
     private TextView textWebURL;
     private LinearLayout layoutWebURL;
 
     private String selectedNoteColor;
     private String selectedImagePath;
+    private ImageInfo selectedImageInfo;
+    private boolean isStoringImage;
 
     private static final int REQUEST_CODE_STORAGE_PERMISSION = 1;
     private static final int REQUEST_CODE_SELECT_IMAGE = 2;
@@ -60,6 +68,8 @@ public class CreateNoteActivity extends AppCompatActivity {
     private AlertDialog dialogDeleteNote;
 
     private Note alreadyAvailableNote;
+    private boolean isLoadingNote;
+    private NoteAutosaver noteAutosaver;
 
 
     @Override
@@ -81,13 +91,49 @@ public class CreateNoteActivity extends AppCompatActivity {
         textDateTime = findViewById(R.id.textDateTime);
         viewSubtitleIndicator = findViewById(R.id.viewSubtitleIndicator);
         imageNote = findViewById(R.id.imageNote);
+        editorImageLoader = new EditorImageLoader(this);
         textWebURL = findViewById(R.id.textWebURL);
         layoutWebURL = findViewById(R.id.layoutWebURL);
 
-        textDateTime.setText(
-                new SimpleDateFormat("EEEE, dd MMMM yyyy HH:mm a", Locale.getDefault())
-                        .format(new Date())
+        noteAutosaver = new NoteAutosaver(
+                this,
+                NotesRepository.getInstance(getApplicationContext()),
+                new NoteAutosaver.Editor() {
+                    @Override
+                    public Note snapshot() {
+                        return buildNote();
+                    }
+
+                    @Override
+                    public void onConflict() {
+                        onSaveConflict();
+                    }
+
+                    @Override
+                    public void onSaveFailed(Exception exception) {
+                        onSaveFailure(exception);
+                    }
+                }
         );
+        TextWatcher autosaveWatcher = new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                onNoteEdited();
+            }
+        };
+        inputNoteTitle.addTextChangedListener(autosaveWatcher);
+        inputNoteSubtitle.addTextChangedListener(autosaveWatcher);
+        inputNoteText.addTextChangedListener(autosaveWatcher);
+
+        textDateTime.setText(NoteDates.format(System.currentTimeMillis()));
 
         ImageView imageSave = findViewById(R.id.imageSave);
         imageSave.setOnClickListener(new View.OnClickListener() {
@@ -101,8 +147,7 @@ public class CreateNoteActivity extends AppCompatActivity {
         selectedImagePath = "";
 
         if(getIntent().getBooleanExtra("isViewOrUpdate", false)) {
-            alreadyAvailableNote = (Note) getIntent().getSerializableExtra("note");
-            setViewOrUpdateNote();
+            loadNote(getIntent().getIntExtra("noteId", -1));
         }
 
         findViewById(R.id.imageRemoveWebURL).setOnClickListener(new View.OnClickListener() {
@@ -110,26 +155,26 @@ public class CreateNoteActivity extends AppCompatActivity {
             public void onClick(View v) {
                 textWebURL.setText(null);
                 layoutWebURL.setVisibility(View.GONE);
+                onNoteEdited();
             }
         });
 
         findViewById(R.id.imageRemoveImage).setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                imageNote.setImageBitmap(null);
+                editorImageLoader.clear(imageNote);
                 imageNote.setVisibility(View.GONE);
                 findViewById(R.id.imageRemoveImage).setVisibility(View.GONE);
                 selectedImagePath = "";
+                selectedImageInfo = null;
+                onNoteEdited();
             }
         });
         if(getIntent().getBooleanExtra("isFromQuickActions", false)) {
             String type = getIntent().getStringExtra("quickActionType");
             if(type != null) {
-                if(type.equals("image")) {
-                    selectedImagePath = getIntent().getStringExtra("imagePath");
-                    imageNote.setImageBitmap(BitmapFactory.decodeFile(selectedImagePath));
-                    imageNote.setVisibility(View.VISIBLE);
-                    findViewById(R.id.imageRemoveImage).setVisibility(View.VISIBLE);
+                if(type.equals("image") && getIntent().getData() != null) {
+                    attachImage(getIntent().getData());
                 } else if(type.equals("URL")) {
                     textWebURL.setText(getIntent().getStringExtra("URL"));
                     layoutWebURL.setVisibility(View.VISIBLE);
@@ -141,17 +186,52 @@ public class CreateNoteActivity extends AppCompatActivity {
         setSubtitleIndicatorColor();
     }
 
+    private void loadNote(int noteId) {
+        NotesRepository notesRepository = NotesRepository.getInstance(getApplicationContext());
+        Note cachedNote = notesRepository.getCachedNote(noteId);
+        if(cachedNote != null) {
+            alreadyAvailableNote = cachedNote;
+            setViewOrUpdateNote();
+            return;
+        }
+        isLoadingNote = true;
+        notesRepository.getNote(this, noteId, new NotesRepository.Callback<Note>() {
+            @Override
+            public void onResult(Note note) {
+                isLoadingNote = false;
+                if(note == null) {
+                    finish();
+                    return;
+                }
+                alreadyAvailableNote = note;
+                setViewOrUpdateNote();
+                setMiscellaneousForNote();
+            }
+        });
+    }
+
     private void setViewOrUpdateNote() {
         inputNoteTitle.setText(alreadyAvailableNote.getTitle());
         inputNoteSubtitle.setText(alreadyAvailableNote.getSubtitle());
         inputNoteText.setText(alreadyAvailableNote.getNoteText());
-        textDateTime.setText(alreadyAvailableNote.getDateTime());
+        textDateTime.setText(NoteDates.format(
+                alreadyAvailableNote.getCreatedAt(),
+                alreadyAvailableNote.getDateTime()
+        ));
 
         if(alreadyAvailableNote.getImagePath() != null && !alreadyAvailableNote.getImagePath().trim().isEmpty()) {
-            imageNote.setImageBitmap(BitmapFactory.decodeFile(alreadyAvailableNote.getImagePath()));
-            imageNote.setVisibility(View.VISIBLE);
-            findViewById(R.id.imageRemoveImage).setVisibility(View.VISIBLE);
             selectedImagePath = alreadyAvailableNote.getImagePath();
+            if(alreadyAvailableNote.getImageWidth() > 0) {
+                selectedImageInfo = new ImageInfo(
+                        alreadyAvailableNote.getImageWidth(),
+                        alreadyAvailableNote.getImageHeight(),
+                        alreadyAvailableNote.getImageColor()
+                );
+            }else {
+                readSelectedImageInfo();
+            }
+            editorImageLoader.load(imageNote, selectedImagePath, selectedImageInfo);
+            findViewById(R.id.imageRemoveImage).setVisibility(View.VISIBLE);
         }
 
         if(alreadyAvailableNote.getWebLink() != null && !alreadyAvailableNote.getWebLink().trim().isEmpty()) {
@@ -159,9 +239,33 @@ public class CreateNoteActivity extends AppCompatActivity {
             layoutWebURL.setVisibility(View.VISIBLE);
         }
 
+        noteAutosaver.setBaseline(alreadyAvailableNote);
+    }
+
+    private void onNoteEdited() {
+        if(!isLoadingNote) {
+            noteAutosaver.onEdited();
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if(!isLoadingNote) {
+            noteAutosaver.flushNow();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        editorImageLoader.release();
     }
 
     private void saveNote() {
+        if(isLoadingNote || isStoringImage) {
+            return;
+        }
         if(inputNoteTitle.getText().toString().trim().isEmpty()) {
             Toast.makeText(this, "Note title can be empty", Toast.LENGTH_SHORT).show();
             return;
@@ -170,40 +274,83 @@ public class CreateNoteActivity extends AppCompatActivity {
             Toast.makeText(this, "Note can't be empty", Toast.LENGTH_SHORT).show();
             return;
         }
-        final Note note = new Note();
+        noteAutosaver.save(new NoteAutosaver.SaveCallback() {
+            @Override
+            public void onSaved(int noteId) {
+                finishWithNote(noteId);
+            }
+
+            @Override
+            public void onConflict() {
+                onSaveConflict();
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                onSaveFailure(exception);
+            }
+        });
+    }
+
+    private Note buildNote() {
+        Note note = new Note();
         note.setTitle(inputNoteTitle.getText().toString());
         note.setSubtitle(inputNoteSubtitle.getText().toString());
         note.setNoteText(inputNoteText.getText().toString());
-        note.setDateTime(textDateTime.getText().toString());
+        long now = System.currentTimeMillis();
+        note.setCreatedAt(now);
+        note.setModifiedAt(now);
         note.setColor(selectedNoteColor);
         note.setImagePath(selectedImagePath);
+        if(selectedImageInfo != null && !selectedImagePath.trim().isEmpty()) {
+            note.setImageWidth(selectedImageInfo.width);
+            note.setImageHeight(selectedImageInfo.height);
+            note.setImageColor(selectedImageInfo.color);
+        }
 
         if(layoutWebURL.getVisibility() == View.VISIBLE) {
             note.setWebLink(textWebURL.getText().toString());
         }
+        return note;
+    }
 
-        if(alreadyAvailableNote != null) {
-            note.setId(alreadyAvailableNote.getId());
-        }
+    private void finishWithNote(int noteId) {
+        Intent intent = new Intent();
+        intent.putExtra("noteId", noteId);
+        setResult(RESULT_OK, intent);
+        finish();
+    }
 
-        @SuppressLint("StaticFieldLeak")
-        class SaveNoteTask extends AsyncTask<Void, Void, Void> {
-            @Override
-            protected Void doInBackground(Void... voids) {
-                NotesDatabase.getDatabase(getApplicationContext()).getNoteDao().insertNote(note);
-                return null;
-            }
+    private void onSaveConflict() {
+        Toast.makeText(this, "Note was changed elsewhere, save again to overwrite", Toast.LENGTH_SHORT).show();
+        reloadBaseline();
+    }
 
-            @Override
-            protected void onPostExecute(Void unused) {
-                super.onPostExecute(unused);
-                Intent intent = new Intent();
-                setResult(RESULT_OK, intent);
-                finish();
-            }
+    private void onSaveFailure(Exception exception) {
+        Toast.makeText(this, exception.getMessage(), Toast.LENGTH_SHORT).show();
+        if(noteAutosaver.getBaseline() != null) {
+            reloadBaseline();
         }
+    }
 
-        new SaveNoteTask().execute();
+    /**
+     * Re-reads the stored note so the next save starts from its current version. The editor
+     * keeps what the user typed.
+     */
+    private void reloadBaseline() {
+        NotesRepository.getInstance(getApplicationContext()).getNote(
+                this,
+                noteAutosaver.getBaseline().getId(),
+                new NotesRepository.Callback<Note>() {
+                    @Override
+                    public void onResult(Note latest) {
+                        if(latest != null) {
+                            alreadyAvailableNote = latest;
+                            noteAutosaver.setBaseline(latest);
+                        }
+                    }
+                }
+        );
     }
     private void iniMiscellaneous() {
         final LinearLayout layoutMiscellaneous = findViewById(R.id.layoutMiscellaneous);
@@ -235,6 +382,7 @@ public class CreateNoteActivity extends AppCompatActivity {
                 imageColor4.setImageResource(0);
                 imageColor5.setImageResource(0);
                 setSubtitleIndicatorColor();
+                onNoteEdited();
             }
         });
 
@@ -248,6 +396,7 @@ public class CreateNoteActivity extends AppCompatActivity {
                 imageColor4.setImageResource(0);
                 imageColor5.setImageResource(0);
                 setSubtitleIndicatorColor();
+                onNoteEdited();
             }
         });
 
@@ -261,6 +410,7 @@ public class CreateNoteActivity extends AppCompatActivity {
                 imageColor4.setImageResource(0);
                 imageColor5.setImageResource(0);
                 setSubtitleIndicatorColor();
+                onNoteEdited();
             }
         });
 
@@ -274,6 +424,7 @@ public class CreateNoteActivity extends AppCompatActivity {
                 imageColor4.setImageResource(R.drawable.ic_done);
                 imageColor5.setImageResource(0);
                 setSubtitleIndicatorColor();
+                onNoteEdited();
             }
         });
 
@@ -287,26 +438,10 @@ public class CreateNoteActivity extends AppCompatActivity {
                 imageColor4.setImageResource(0);
                 imageColor5.setImageResource(R.drawable.ic_done);
                 setSubtitleIndicatorColor();
+                onNoteEdited();
             }
         });
 
-        if(alreadyAvailableNote != null && alreadyAvailableNote.getColor() != null && !alreadyAvailableNote.getColor().trim().isEmpty()) {
-            switch (alreadyAvailableNote.getColor()) {
-                case "#FDBE3B":
-                    layoutMiscellaneous.findViewById(R.id.viewColor2).performClick();
-                    break;
-                case "#FF4842":
-                    layoutMiscellaneous.findViewById(R.id.viewColor3).performClick();
-                    break;
-                case "#3A52Fc":
-                    layoutMiscellaneous.findViewById(R.id.viewColor4).performClick();
-                    break;
-                case "#000000":
-                    layoutMiscellaneous.findViewById(R.id.viewColor5).performClick();
-                    break;
-            }
-        }
-
         layoutMiscellaneous.findViewById(R.id.layoutAddImage).setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -332,7 +467,38 @@ public class CreateNoteActivity extends AppCompatActivity {
             }
         });
 
+        setMiscellaneousForNote();
+    }
+
+    private void setMiscellaneousForNote() {
+        final LinearLayout layoutMiscellaneous = findViewById(R.id.layoutMiscellaneous);
+        final BottomSheetBehavior<LinearLayout> bottomSheetBehavior = BottomSheetBehavior.from(layoutMiscellaneous);
+        if(alreadyAvailableNote != null && alreadyAvailableNote.getColor() != null && !alreadyAvailableNote.getColor().trim().isEmpty()) {
+            switch (alreadyAvailableNote.getColor()) {
+                case "#FDBE3B":
+                    layoutMiscellaneous.findViewById(R.id.viewColor2).performClick();
+                    break;
+                case "#FF4842":
+                    layoutMiscellaneous.findViewById(R.id.viewColor3).performClick();
+                    break;
+                case "#3A52Fc":
+                    layoutMiscellaneous.findViewById(R.id.viewColor4).performClick();
+                    break;
+                case "#000000":
+                    layoutMiscellaneous.findViewById(R.id.viewColor5).performClick();
+                    break;
+            }
+        }
+
         if(alreadyAvailableNote != null) {
+            layoutMiscellaneous.findViewById(R.id.layoutNoteHistory).setVisibility(View.VISIBLE);
+            layoutMiscellaneous.findViewById(R.id.layoutNoteHistory).setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    bottomSheetBehavior.setState(BottomSheetBehavior.STATE_COLLAPSED);
+                    showNoteHistory();
+                }
+            });
             layoutMiscellaneous.findViewById(R.id.layoutDeleteNote).setVisibility(View.VISIBLE);
             layoutMiscellaneous.findViewById(R.id.layoutDeleteNote).setOnClickListener(new View.OnClickListener() {
                 @Override
@@ -344,6 +510,61 @@ public class CreateNoteActivity extends AppCompatActivity {
         }
     }
 
+    private void showNoteHistory() {
+        final int noteId = noteAutosaver.getBaseline().getId();
+        NotesRepository.getInstance(getApplicationContext()).getRevisions(
+                this,
+                noteId,
+                new NotesRepository.Callback<List<NoteRevisionSummary>>() {
+                    @Override
+                    public void onResult(final List<NoteRevisionSummary> revisions) {
+                        if(revisions.isEmpty()) {
+                            Toast.makeText(CreateNoteActivity.this, R.string.no_revisions, Toast.LENGTH_SHORT).show();
+                            return;
+                        }
+                        String[] labels = new String[revisions.size()];
+                        for(int i = 0; i < labels.length; i++) {
+                            labels[i] = NoteDates.format(revisions.get(i).getCreatedAt());
+                        }
+                        new AlertDialog.Builder(CreateNoteActivity.this)
+                                .setTitle(R.string.note_history)
+                                .setItems(labels, new DialogInterface.OnClickListener() {
+                                    @Override
+                                    public void onClick(DialogInterface dialog, int which) {
+                                        restoreRevision(noteId, revisions.get(which).getId());
+                                    }
+                                })
+                                .show();
+                    }
+                }
+        );
+    }
+
+    /**
+     * Puts an earlier version's title, subtitle and text back into the editor. Color, image and
+     * link are not kept in the history and stay as they are. The result is saved like any other
+     * edit, so the restore itself shows up in the history and can be undone.
+     */
+    private void restoreRevision(int noteId, int revisionId) {
+        NotesRepository.getInstance(getApplicationContext()).getRevision(
+                this,
+                noteId,
+                revisionId,
+                new NotesRepository.Callback<RevisionStore.Content>() {
+                    @Override
+                    public void onResult(RevisionStore.Content revision) {
+                        if(revision == null) {
+                            return;
+                        }
+                        inputNoteTitle.setText(revision.title);
+                        inputNoteSubtitle.setText(revision.subtitle);
+                        inputNoteText.setText(revision.noteText);
+                        Toast.makeText(CreateNoteActivity.this, R.string.revision_restored, Toast.LENGTH_SHORT).show();
+                    }
+                }
+        );
+    }
+
     private void showDeleteNoteDialog() {
         if(dialogDeleteNote == null) {
             AlertDialog.Builder builder = new AlertDialog.Builder(CreateNoteActivity.this);
@@ -359,27 +580,26 @@ public class CreateNoteActivity extends AppCompatActivity {
             view.findViewById(R.id.textDeleteNote).setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
-                    @SuppressLint("StaticFieldLeak")
-                    class DeleteNoteTask extends AsyncTask<Void, Void, Void> {
-
-                        @Override
-                        protected Void doInBackground(Void... voids) {
-                            NotesDatabase.getDatabase(getApplicationContext()).getNoteDao().deleteNote(
-                                    alreadyAvailableNote
-                            );
-                            return null;
-                        }
-
-                        @Override
-                        protected void onPostExecute(Void aVoid) {
-                            super.onPostExecute(aVoid);
-                            Intent intent = new Intent();
-                            intent.putExtra("isNoteDeleted", true);
-                            setResult(RESULT_OK, intent);
-                            finish();
-                        }
-                    }
-                    new DeleteNoteTask().execute();
+                    noteAutosaver.stop();
+                    NotesRepository.getInstance(getApplicationContext()).deleteNote(
+                            CreateNoteActivity.this,
+                            alreadyAvailableNote,
+                            new NotesRepository.Callback<Void>() {
+                                @Override
+                                public void onResult(Void unused) {
+                                    Intent intent = new Intent();
+                                    intent.putExtra("noteId", alreadyAvailableNote.getId());
+                                    intent.putExtra("isNoteDeleted", true);
+                                    setResult(RESULT_OK, intent);
+                                    finish();
+                                }
+
+                                @Override
+                                public void onFailure(Exception exception) {
+                                    Toast.makeText(CreateNoteActivity.this, exception.getMessage(), Toast.LENGTH_SHORT).show();
+                                }
+                            }
+                    );
                 }
             });
 
@@ -425,36 +645,58 @@ public class CreateNoteActivity extends AppCompatActivity {
             if(data != null) {
                 Uri selectedImageUri = data.getData();
                 if(selectedImageUri != null) {
-                    try {
-
-                        InputStream inputStream = getContentResolver().openInputStream(selectedImageUri);
-                        Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
-                        imageNote.setImageBitmap(bitmap);
-                        imageNote.setVisibility(View.VISIBLE);
-                        findViewById(R.id.imageRemoveImage).setVisibility(View.VISIBLE);
-
-                        selectedImagePath = getPathFromUri(selectedImageUri);
-
-                    }catch (Exception exception) {
-                        Toast.makeText(this, exception.getMessage(), Toast.LENGTH_SHORT).show();
-                    }
+                    attachImage(selectedImageUri);
                 }
             }
         }
     }
-    private String getPathFromUri(Uri contentUri) {
-        String filePath;
-        Cursor cursor = getContentResolver()
-                .query(contentUri, null, null, null, null);
-        if(cursor == null) {
-            filePath = contentUri.getPath();
-        }else{
-            cursor.moveToFirst();
-            int index = cursor.getColumnIndex("_data");
-            filePath = cursor.getString(index);
-            cursor.close();
+    /**
+     * Copies the picked image into the app's {@link ImageStore}; the note keeps the stored path,
+     * never the original.
+     */
+    private void attachImage(Uri imageUri) {
+        isStoringImage = true;
+        ImageStore.getInstance(this).ingest(imageUri, new ImageStore.Callback() {
+            @Override
+            public void onStored(String imagePath, ImageInfo info) {
+                isStoringImage = false;
+                if(isFinishing() || isDestroyed()) {
+                    return;
+                }
+                selectedImagePath = imagePath;
+                selectedImageInfo = info;
+                editorImageLoader.load(imageNote, imagePath, info);
+                findViewById(R.id.imageRemoveImage).setVisibility(View.VISIBLE);
+                onNoteEdited();
+            }
+
+            @Override
+            public void onFailed(Exception exception) {
+                isStoringImage = false;
+                Toast.makeText(CreateNoteActivity.this, exception.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * Measures the attached image off the main thread so its size and placeholder color are
+     * saved with the note.
+     */
+    private void readSelectedImageInfo() {
+        selectedImageInfo = null;
+        final String imagePath = selectedImagePath;
+        if(imagePath == null || imagePath.trim().isEmpty()) {
+            return;
         }
-        return filePath;
+        ThumbnailLoader.getInstance(this).readInfo(imagePath, new ThumbnailLoader.InfoCallback() {
+            @Override
+            public void onInfo(ImageInfo info) {
+                if(info != null && imagePath.equals(selectedImagePath)) {
+                    selectedImageInfo = info;
+                    noteAutosaver.onImageMeasured(imagePath, info.width, info.height, info.color);
+                }
+            }
+        });
     }
 
     private void showAddURLDialog() {
@@ -484,6 +726,7 @@ public class CreateNoteActivity extends AppCompatActivity {
                         textWebURL.setText(inputURL.getText().toString());
                         layoutWebURL.setVisibility(View.VISIBLE);
                         dialogAddURL.dismiss();
+                        onNoteEdited();
                     }
                 }
             });
@@ -1,12 +1,12 @@
 package com.example.notesapp.activities;
 
 import android.Manifest;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
+import android.content.res.ColorStateList;
 import android.graphics.drawable.ColorDrawable;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import android.text.Editable;
@@ -18,6 +18,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.EditText;
 import android.widget.ImageView;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -26,16 +27,24 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.core.widget.ImageViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.StaggeredGridLayoutManager;
 
 import com.example.notesapp.R;
 import com.example.notesapp.adapters.NotesAdapter;
-import com.example.notesapp.database.NotesDatabase;
-import com.example.notesapp.entities.Note;
+import com.example.notesapp.entities.NoteSummary;
+import com.example.notesapp.images.ImageStore;
 import com.example.notesapp.listeners.NotesListener;
-
-import java.util.ArrayList;
+import com.example.notesapp.paging.NotesPager;
+import com.example.notesapp.repository.NotesRepository;
+import com.example.notesapp.search.NotesSearcher;
+import com.example.notesapp.search.SearchScheduler;
+import com.example.notesapp.transfer.NotesTransfer;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class MainActivity extends AppCompatActivity implements NotesListener {
@@ -46,13 +55,20 @@ public class MainActivity extends AppCompatActivity implements NotesListener {
     public static final int REQUEST_CODE_SELECT_IMAGE = 4;
     public static final int REQUEST_CODE_WRITE_STORAGE_PERMISSION = 5;
 
+    private static final String[] NOTE_COLORS = {"#333333", "#FDBE3B", "#FF4842", "#3A52Fc", "#000000"};
+
     private RecyclerView notesRecyclerView;
-    private List<Note> noteList;
     private NotesAdapter notesAdapter;
 
-    private int noteClickedPosition = -1;
-
     private AlertDialog dialogAddURL;
+    private AlertDialog transferDialog;
+
+    private NotesRepository notesRepository;
+    private NotesPager notesPager;
+
+    private NotesSearcher notesSearcher;
+    private SearchScheduler<NoteSummary> searchScheduler;
+    private String searchKeyword = "";
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -71,15 +87,87 @@ public class MainActivity extends AppCompatActivity implements NotesListener {
         });
 
         notesRecyclerView = findViewById(R.id.noteRecyclerView);
-        notesRecyclerView.setLayoutManager(
-                new StaggeredGridLayoutManager(2,StaggeredGridLayoutManager.VERTICAL)
-        );
+        final StaggeredGridLayoutManager layoutManager =
+                new StaggeredGridLayoutManager(
+                        getResources().getInteger(R.integer.note_grid_span_count),
+                        StaggeredGridLayoutManager.VERTICAL
+                );
+        notesRecyclerView.setLayoutManager(layoutManager);
 
-        noteList = new ArrayList<>();
-        notesAdapter = new NotesAdapter(noteList, this);
+        notesAdapter = new NotesAdapter(this);
         notesRecyclerView.setAdapter(notesAdapter);
 
-        getNote(REQUEST_CODE_SHOW_NOTES, false);
+        notesRepository = NotesRepository.getInstance(getApplicationContext());
+        notesPager = new NotesPager(
+                notesRepository,
+                this,
+                new NotesPager.Listener() {
+                    @Override
+                    public void onWindowChanged(List<NoteSummary> window) {
+                        notesAdapter.submitSource(window);
+                    }
+                }
+        );
+        notesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if(notesAdapter.isShowingSearchResults()) {
+                    return;
+                }
+                int firstVisible = Integer.MAX_VALUE;
+                for(int position : layoutManager.findFirstVisibleItemPositions(null)) {
+                    if(position != RecyclerView.NO_POSITION) {
+                        firstVisible = Math.min(firstVisible, position);
+                    }
+                }
+                int lastVisible = RecyclerView.NO_POSITION;
+                for(int position : layoutManager.findLastVisibleItemPositions(null)) {
+                    lastVisible = Math.max(lastVisible, position);
+                }
+                if(lastVisible != RecyclerView.NO_POSITION) {
+                    notesPager.onVisibleRangeChanged(firstVisible, lastVisible);
+                }
+            }
+        });
+        notesPager.loadAfter();
+        notesSearcher = NotesSearcher.getInstance(this);
+        searchScheduler = new SearchScheduler<>(
+                notesSearcher.getWorker(),
+                notesSearcher,
+                new SearchScheduler.Listener<NoteSummary>() {
+                    @Override
+                    public void onResults(String query, List<NoteSummary> results) {
+                        notesAdapter.showSearchResults(results);
+                    }
+                }
+        );
+        notesSearcher.requestSync();
+        ImageStore.getInstance(this).collectGarbage();
+        notesRepository.compactRevisions(this);
+        notesRepository.observeNotes(this, new Runnable() {
+            @Override
+            public void run() {
+                notesPager.refresh();
+                notesSearcher.requestUpdate();
+                if(notesAdapter.isShowingSearchResults()) {
+                    searchNotes(searchKeyword);
+                }
+            }
+        });
+
+       final ImageView imageSearchMode = findViewById(R.id.imageSearchMode);
+       showSearchMode(imageSearchMode, notesSearcher.getMode());
+       imageSearchMode.setOnClickListener(new View.OnClickListener() {
+           @Override
+           public void onClick(View v) {
+               String[] modeNames = getResources().getStringArray(R.array.search_mode_names);
+               int mode = (notesSearcher.getMode() + 1) % modeNames.length;
+               notesSearcher.setMode(mode);
+               showSearchMode(imageSearchMode, mode);
+               Toast.makeText(MainActivity.this, modeNames[mode], Toast.LENGTH_SHORT).show();
+               searchNotes(searchKeyword);
+           }
+       });
 
        EditText inputSearch = findViewById(R.id.inputSearch);
        inputSearch.addTextChangedListener(new TextWatcher() {
@@ -90,15 +178,12 @@ public class MainActivity extends AppCompatActivity implements NotesListener {
 
            @Override
            public void onTextChanged(CharSequence s, int start, int before, int count) {
-               notesAdapter.cancelTimer();
 
            }
 
            @Override
            public void afterTextChanged(Editable s) {
-               if(noteList.size() != 0) {
-                   notesAdapter.searchNotes(s.toString());
-               }
+               searchNotes(s.toString());
 
            }
        });
@@ -134,6 +219,210 @@ public class MainActivity extends AppCompatActivity implements NotesListener {
                showAddURLDialog();
            }
        });
+
+       findViewById(R.id.imageExportNotes).setOnClickListener(new View.OnClickListener() {
+           @Override
+           public void onClick(View v) {
+               exportNotes();
+           }
+       });
+       findViewById(R.id.imageImportNotes).setOnClickListener(new View.OnClickListener() {
+           @Override
+           public void onClick(View v) {
+               showImportNotesDialog();
+           }
+       });
+
+       findViewById(R.id.imageClearSelection).setOnClickListener(new View.OnClickListener() {
+           @Override
+           public void onClick(View v) {
+               notesAdapter.clearSelection();
+           }
+       });
+       findViewById(R.id.imageDeleteSelected).setOnClickListener(new View.OnClickListener() {
+           @Override
+           public void onClick(View v) {
+               showDeleteSelectedDialog();
+           }
+       });
+       findViewById(R.id.imageRecolorSelected).setOnClickListener(new View.OnClickListener() {
+           @Override
+           public void onClick(View v) {
+               showRecolorSelectedDialog();
+           }
+       });
+    }
+
+    @Override
+    public void onBackPressed() {
+        if(notesAdapter.isSelecting()) {
+            notesAdapter.clearSelection();
+        }else{
+            super.onBackPressed();
+        }
+    }
+
+    @Override
+    public void onSelectionChanged(int selectedCount) {
+        boolean selecting = selectedCount > 0;
+        findViewById(R.id.layoutSelectionActions).setVisibility(selecting ? View.VISIBLE : View.GONE);
+        findViewById(R.id.imageAddNoteMain).setVisibility(selecting ? View.GONE : View.VISIBLE);
+        TextView textSelectedCount = findViewById(R.id.textSelectedCount);
+        textSelectedCount.setText(getString(R.string.selected_notes, selectedCount));
+    }
+
+    private void exportNotes() {
+        final AlertDialog dialog = showTransferDialog(
+                R.string.export_notes,
+                getString(R.string.exported_progress, 0, 0)
+        );
+        new NotesTransfer(this).exportNotes(new NotesTransfer.Listener() {
+            @Override
+            public void onProgress(int done, int total) {
+                if(dialog == transferDialog) {
+                    dialog.setMessage(getString(R.string.exported_progress, done, total));
+                }
+            }
+
+            @Override
+            public void onFinished(int count, File directory) {
+                dismissTransferDialog(dialog);
+                Toast.makeText(
+                        getApplicationContext(),
+                        getString(R.string.export_finished, count, directory.getAbsolutePath()),
+                        Toast.LENGTH_LONG
+                ).show();
+            }
+
+            @Override
+            public void onFailed(Exception exception) {
+                dismissTransferDialog(dialog);
+                Toast.makeText(getApplicationContext(), exception.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * Progress dialog for an export or import. The transfer outlives the activity, so its
+     * listener only touches the dialog while it is still the one this activity shows.
+     */
+    private AlertDialog showTransferDialog(int titleId, String message) {
+        transferDialog = new AlertDialog.Builder(this)
+                .setTitle(titleId)
+                .setMessage(message)
+                .setCancelable(false)
+                .show();
+        return transferDialog;
+    }
+
+    private void dismissTransferDialog(AlertDialog dialog) {
+        if(dialog == transferDialog) {
+            transferDialog.dismiss();
+            transferDialog = null;
+        }
+    }
+
+    private void showImportNotesDialog() {
+        final NotesTransfer notesTransfer = new NotesTransfer(this);
+        File exportsDir = notesTransfer.getExportsDir();
+        File[] exports = exportsDir == null ? null : exportsDir.listFiles();
+        if(exports == null || exports.length == 0) {
+            Toast.makeText(this, R.string.no_exports_found, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Arrays.sort(exports, Collections.reverseOrder());
+        final File[] directories = exports;
+        String[] names = new String[directories.length];
+        for(int i = 0; i < directories.length; i++) {
+            names[i] = directories[i].getName();
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.import_notes)
+                .setItems(names, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        importNotes(notesTransfer, directories[which]);
+                    }
+                })
+                .show();
+    }
+
+    private void importNotes(NotesTransfer notesTransfer, File directory) {
+        final AlertDialog dialog = showTransferDialog(
+                R.string.import_notes,
+                getString(R.string.imported_progress, 0)
+        );
+        notesTransfer.importNotes(directory, new NotesTransfer.Listener() {
+            @Override
+            public void onProgress(int done, int total) {
+                if(dialog == transferDialog) {
+                    dialog.setMessage(getString(R.string.imported_progress, done));
+                }
+            }
+
+            @Override
+            public void onFinished(int count, File directory) {
+                dismissTransferDialog(dialog);
+                Toast.makeText(
+                        getApplicationContext(),
+                        getString(R.string.import_finished, count),
+                        Toast.LENGTH_SHORT
+                ).show();
+            }
+
+            @Override
+            public void onFailed(Exception exception) {
+                dismissTransferDialog(dialog);
+                Toast.makeText(getApplicationContext(), exception.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void showDeleteSelectedDialog() {
+        final List<Integer> noteIds = notesAdapter.getSelectedNoteIds();
+        new AlertDialog.Builder(this)
+                .setMessage(R.string.delete_selected_notes)
+                .setPositiveButton(R.string.delete, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        notesAdapter.clearSelection();
+                        notesRepository.deleteNotes(MainActivity.this, noteIds, reportWriteFailure());
+                    }
+                })
+                .setNegativeButton(R.string.cancel_dialog, null)
+                .show();
+    }
+
+    private void showRecolorSelectedDialog() {
+        final List<Integer> noteIds = notesAdapter.getSelectedNoteIds();
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.pick_color_selected_notes)
+                .setItems(R.array.note_color_names, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        notesAdapter.clearSelection();
+                        notesRepository.recolorNotes(
+                                MainActivity.this,
+                                noteIds,
+                                NOTE_COLORS[which],
+                                reportWriteFailure()
+                        );
+                    }
+                })
+                .show();
+    }
+
+    private <T> NotesRepository.Callback<T> reportWriteFailure() {
+        return new NotesRepository.Callback<T>() {
+            @Override
+            public void onResult(T result) {
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                Toast.makeText(MainActivity.this, exception.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        };
     }
 
     private void selectImage() {
@@ -155,85 +444,72 @@ public class MainActivity extends AppCompatActivity implements NotesListener {
         }
     }
 
-    private String getPathFromUri(Uri contentUri) {
-        String filePath;
-        Cursor cursor = getContentResolver()
-                .query(contentUri, null, null, null, null);
-        if(cursor == null) {
-            filePath = contentUri.getPath();
-        }else{
-            cursor.moveToFirst();
-            int index = cursor.getColumnIndex("_data");
-            filePath = cursor.getString(index);
-            cursor.close();
-        }
-        return filePath;
-    }
-
     @Override
-    public void onNoteClicked(Note note, int position) {
-        noteClickedPosition = position;
+    public void onNoteClicked(NoteSummary noteSummary, int position) {
         Intent intent = new Intent(getApplicationContext(), CreateNoteActivity.class);
         intent.putExtra("isViewOrUpdate", true);
-        intent.putExtra("note", note);
+        intent.putExtra("noteId", noteSummary.getId());
         startActivityForResult(intent, REQUEST_CODE_UPDATE_NOTE);
 
     }
 
-    private void getNote(final int requestCode, final boolean isNoteDeleted) {
+    /**
+     * The searcher outlives this activity, so the icon is set from its mode on creation too.
+     */
+    private void showSearchMode(ImageView imageSearchMode, int mode) {
+        ImageViewCompat.setImageTintList(imageSearchMode, ColorStateList.valueOf(ContextCompat.getColor(
+                this,
+                mode == NotesSearcher.MODE_EXACT ? R.color.colorSearchIcon : R.color.colorAccent
+        )));
+    }
 
-        class GetNotesTask extends AsyncTask<Void, Void, List<Note>> {
-            @Override
-            protected List<Note> doInBackground(Void... voids) {
-                return NotesDatabase
-                        .getDatabase(getApplicationContext())
-                        .getNoteDao()
-                        .getAllNotes();
-            }
+    private void searchNotes(String searchKeyword) {
+        this.searchKeyword = searchKeyword;
+        if(searchKeyword.trim().isEmpty()) {
+            searchScheduler.cancel();
+            notesAdapter.clearSearch();
+            return;
+        }
+        searchScheduler.schedule(searchKeyword);
+    }
 
-            @Override
-            protected void onPostExecute(List<Note> notes) {
-                super.onPostExecute(notes);
-               if(requestCode == REQUEST_CODE_SHOW_NOTES) {
-                   noteList.addAll(notes);
-                   notesAdapter.notifyDataSetChanged();
-               }else if(requestCode == REQUEST_CODE_ADD_NOTE) {
-                   noteList.add(0, notes.get(0));
-                   notesAdapter.notifyItemInserted(0);
-                   notesRecyclerView.smoothScrollToPosition(0);
-               }else if(requestCode == REQUEST_CODE_UPDATE_NOTE) {
-                   noteList.remove(noteClickedPosition);
-                   if(isNoteDeleted){
-                       notesAdapter.notifyItemRemoved(noteClickedPosition);
-                   }else{
-                       noteList.add(noteClickedPosition, notes.get(noteClickedPosition));
-                       notesAdapter.notifyItemChanged(noteClickedPosition);
-                   }
-               }
-            }
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        searchScheduler.shutdown();
+        if(transferDialog != null) {
+            transferDialog.dismiss();
+            transferDialog = null;
         }
-        new GetNotesTask().execute();
     }
 
     @Override
     protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if(requestCode == REQUEST_CODE_ADD_NOTE && resultCode == RESULT_OK) {
-            getNote(REQUEST_CODE_ADD_NOTE, false);
+            if(data != null) {
+                showSavedNote(data.getIntExtra("noteId", -1), true);
+            }
         }else if (requestCode == REQUEST_CODE_UPDATE_NOTE && resultCode == RESULT_OK) {
             if(data != null) {
-                getNote(REQUEST_CODE_UPDATE_NOTE, data.getBooleanExtra("isNoteDeleted", false));
+                int noteId = data.getIntExtra("noteId", -1);
+                if(data.getBooleanExtra("isNoteDeleted", false)) {
+                    notesPager.removeNote(noteId);
+                    notesAdapter.removeSearchResult(noteId);
+                }else{
+                    showSavedNote(noteId, false);
+                }
             }
         }else if(requestCode == REQUEST_CODE_SELECT_IMAGE && resultCode == RESULT_OK) {
             if(data != null) {
                 Uri selectedImageUri = data.getData();
                 if(selectedImageUri != null) {
                     try {
-                        String selectedImagePath = getPathFromUri(selectedImageUri);
                         Intent intent = new Intent(getApplicationContext(), CreateNoteActivity.class);
                         intent.putExtra("isFromQuickActions", true);
                         intent.putExtra("quickActionType", "image");
-                        intent.putExtra("imagePath", selectedImagePath);
+                        intent.setData(selectedImageUri);
+                        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
                         startActivityForResult(intent, REQUEST_CODE_ADD_NOTE);
                     }catch (Exception exception) {
                         Toast.makeText(this, exception.getMessage(), Toast.LENGTH_SHORT).show();
@@ -243,6 +519,24 @@ public class MainActivity extends AppCompatActivity implements NotesListener {
         }
     }
 
+    private void showSavedNote(int noteId, boolean isNewNote) {
+        if(isNewNote) {
+            notesPager.showStart();
+            notesRecyclerView.scrollToPosition(0);
+            return;
+        }
+        notesRepository.getNoteSummary(this, noteId, new NotesRepository.Callback<NoteSummary>() {
+            @Override
+            public void onResult(NoteSummary note) {
+                if(note == null) {
+                    return;
+                }
+                notesPager.replaceNote(note);
+                notesAdapter.updateSearchResult(note);
+            }
+        });
+    }
+
     private void showAddURLDialog() {
         if(dialogAddURL == null) {
             AlertDialog.Builder builder = new AlertDialog.Builder(MainActivity.this);
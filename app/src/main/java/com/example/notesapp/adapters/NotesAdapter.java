@@ -1,10 +1,11 @@
 package com.example.notesapp.adapters;
 
-import android.graphics.BitmapFactory;
 import android.graphics.Color;
 import android.graphics.drawable.GradientDrawable;
-import android.os.Handler;
-import android.os.Looper;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.TextUtils;
+import android.text.style.BackgroundColorSpan;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -12,134 +13,286 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.notesapp.R;
-import com.example.notesapp.entities.Note;
+import com.example.notesapp.entities.NoteSummary;
+import com.example.notesapp.images.AspectRatioImageView;
+import com.example.notesapp.images.ThumbnailLoader;
 import com.example.notesapp.listeners.NotesListener;
-import com.makeramen.roundedimageview.RoundedImageView;
+import com.example.notesapp.search.SearchHit;
+import com.example.notesapp.utilities.NoteDates;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
 
 public class NotesAdapter extends RecyclerView.Adapter<NotesAdapter.NoteViewHolder> {
 
-    private List<Note> notes;
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    private static final DiffUtil.ItemCallback<NoteSummary> DIFF_CALLBACK = new DiffUtil.ItemCallback<NoteSummary>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull NoteSummary oldItem, @NonNull NoteSummary newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull NoteSummary oldItem, @NonNull NoteSummary newItem) {
+            return TextUtils.equals(oldItem.getTitle(), newItem.getTitle())
+                    && TextUtils.equals(oldItem.getSubtitle(), newItem.getSubtitle())
+                    && oldItem.getCreatedAt() == newItem.getCreatedAt()
+                    && TextUtils.equals(oldItem.getDateTime(), newItem.getDateTime())
+                    && TextUtils.equals(oldItem.getColor(), newItem.getColor())
+                    && TextUtils.equals(oldItem.getImagePath(), newItem.getImagePath())
+                    && oldItem.getImageWidth() == newItem.getImageWidth()
+                    && oldItem.getImageHeight() == newItem.getImageHeight()
+                    && oldItem.getImageColor() == newItem.getImageColor()
+                    && TextUtils.equals(oldItem.getNotePreview(), newItem.getNotePreview())
+                    && SearchHit.sameHighlights(oldItem, newItem);
+        }
+    };
+
+    private final AsyncListDiffer<NoteSummary> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private NotesListener notesListener;
-    private Timer timer;
-    private List<Note> noteSource;
+    private List<NoteSummary> noteSource = Collections.emptyList();
+    private List<NoteSummary> searchResults;
+    private final LinkedHashSet<Integer> selectedNoteIds = new LinkedHashSet<>();
 
-    public NotesAdapter(List<Note> notes, NotesListener notesListener) {
-        this.notes = notes;
+    public NotesAdapter(NotesListener notesListener) {
         this.notesListener = notesListener;
-        noteSource = notes;
+        setHasStableIds(true);
     }
 
     @NonNull
     @Override
     public NoteViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        return new NoteViewHolder(
+        final NoteViewHolder holder = new NoteViewHolder(
                 LayoutInflater.from(parent.getContext()).inflate(
                         R.layout.item_container_note,
                         parent,
                         false
                 )
         );
-    }
-
-    @Override
-    public void onBindViewHolder(@NonNull NoteViewHolder holder, final int position) {
-        holder.setNote(notes.get(position));
         holder.layoutNote.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                notesListener.onNoteClicked(notes.get(position), position);
+                int position = holder.getBindingAdapterPosition();
+                if(position == RecyclerView.NO_POSITION) {
+                    return;
+                }
+                if(isSelecting()) {
+                    toggleSelection(position);
+                }else{
+                    notesListener.onNoteClicked(differ.getCurrentList().get(position), position);
+                }
+            }
+        });
+        holder.layoutNote.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                int position = holder.getBindingAdapterPosition();
+                if(position == RecyclerView.NO_POSITION) {
+                    return false;
+                }
+                toggleSelection(position);
+                return true;
             }
         });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull NoteViewHolder holder, int position) {
+        NoteSummary note = differ.getCurrentList().get(position);
+        holder.setNote(note);
+        holder.setSelected(selectedNoteIds.contains(note.getId()));
+    }
 
+    @Override
+    public void onBindViewHolder(@NonNull NoteViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if(payloads.contains(PAYLOAD_SELECTION)) {
+            holder.setSelected(selectedNoteIds.contains(differ.getCurrentList().get(position).getId()));
+        }else{
+            onBindViewHolder(holder, position);
+        }
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull NoteViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.thumbnailLoader.cancel(holder.imageNote);
     }
 
     @Override
     public int getItemCount() {
-        return notes.size();
+        return differ.getCurrentList().size();
     }
 
     @Override
-    public int getItemViewType(int position) {
-        return position;
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).getId();
     }
 
     static class NoteViewHolder extends RecyclerView.ViewHolder {
 
-        TextView textTitle, textSubtitle, textDateTime;
+        private static final float SELECTED_ALPHA = 0.5f;
+
+        TextView textTitle, textSubtitle, textSnippet, textDateTime;
         LinearLayout layoutNote;
-        RoundedImageView imageNote;
+        AspectRatioImageView imageNote;
+        ThumbnailLoader thumbnailLoader;
+        int thumbnailWidth;
+        int highlightColor;
 
         NoteViewHolder(@NonNull View itemView) {
             super(itemView);
+            thumbnailLoader = ThumbnailLoader.getInstance(itemView.getContext());
+            thumbnailWidth = itemView.getResources().getDisplayMetrics().widthPixels
+                    / itemView.getResources().getInteger(R.integer.note_grid_span_count);
             textTitle = itemView.findViewById(R.id.textTitle);
             textSubtitle = itemView.findViewById(R.id.textSubtitle);
+            textSnippet = itemView.findViewById(R.id.textSnippet);
+            highlightColor = ContextCompat.getColor(itemView.getContext(), R.color.colorSearchHighlight);
             textDateTime = itemView.findViewById(R.id.textDateTime);
             layoutNote = itemView.findViewById(R.id.layoutNote);
             imageNote = itemView.findViewById(R.id.imageNote);
         }
 
-        void setNote(Note note) {
-            textTitle.setText(note.getTitle());
+        /**
+         * Applies the match ranges worked out by the search engine; the text is not searched again.
+         */
+        CharSequence highlight(String text, int[] matches) {
+            if(matches.length == 0) {
+                return text;
+            }
+            SpannableString highlighted = new SpannableString(text);
+            for(int i = 0; i + 1 < matches.length; i += 2) {
+                highlighted.setSpan(new BackgroundColorSpan(highlightColor), matches[i], matches[i + 1],
+                        Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+            return highlighted;
+        }
+
+        void setSelected(boolean selected) {
+            layoutNote.setAlpha(selected ? SELECTED_ALPHA : 1f);
+        }
+
+        void setNote(NoteSummary note) {
+            SearchHit hit = note instanceof SearchHit ? (SearchHit) note : null;
+            textTitle.setText(hit != null ? highlight(note.getTitle(), hit.getTitleMatches()) : note.getTitle());
             if(note.getSubtitle().trim().isEmpty()) {
                 textSubtitle.setVisibility(View.GONE);
             }else {
-                textSubtitle.setText(note.getSubtitle());
+                textSubtitle.setText(hit != null
+                        ? highlight(note.getSubtitle(), hit.getSubtitleMatches()) : note.getSubtitle());
+                textSubtitle.setVisibility(View.VISIBLE);
+            }
+            if(hit != null && hit.getSnippet() != null) {
+                textSnippet.setText(highlight(hit.getSnippet(), hit.getSnippetMatches()));
+                textSnippet.setVisibility(View.VISIBLE);
+            }else {
+                textSnippet.setText(null);
+                textSnippet.setVisibility(View.GONE);
             }
-            textDateTime.setText(note.getDateTime());
-            GradientDrawable gradientDrawable = (GradientDrawable) layoutNote.getBackground();
+            textDateTime.setText(NoteDates.format(note.getCreatedAt(), note.getDateTime()));
+            GradientDrawable gradientDrawable = (GradientDrawable) layoutNote.getBackground().mutate();
             if(note.getColor() != null ) {
                 gradientDrawable.setColor(Color.parseColor(note.getColor()));
             }else{
                 gradientDrawable.setColor(Color.parseColor("#333333"));
             }
-            if(note.getImagePath() != null) {
-                imageNote.setImageBitmap(BitmapFactory.decodeFile(note.getImagePath()));
+            if(note.getImagePath() != null && !note.getImagePath().trim().isEmpty()) {
+                imageNote.setAspectRatio(note.getImageWidth(), note.getImageHeight());
+                thumbnailLoader.load(imageNote, note.getImagePath(), thumbnailWidth, note.getImageColor());
                 imageNote.setVisibility(View.VISIBLE);
             }else{
+                thumbnailLoader.cancel(imageNote);
+                imageNote.setImageDrawable(null);
                 imageNote.setVisibility(View.GONE);
             }
         }
     }
 
-    public void searchNotes(final String searchKeyword) {
-        timer = new Timer();
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                if(searchKeyword.trim().isEmpty()) {
-                    notes = noteSource;
-                }else{
-                    ArrayList<Note> temp = new ArrayList<>();
-                    for(Note note: noteSource) {
-                        if(note.getTitle().toLowerCase().contains(searchKeyword.toLowerCase())
-                                || note.getSubtitle().toLowerCase().contains(searchKeyword.toLowerCase())
-                                || note.getNoteText().toLowerCase().contains(searchKeyword.toLowerCase())) {
-                            temp.add(note);
-                        }
-                    }
-                    notes = temp;
-                }
-               new Handler(Looper.getMainLooper()).post(new Runnable() {
-                   @Override
-                   public void run() {
-                       notifyDataSetChanged();
-                   }
-               });
+    public void submitSource(List<NoteSummary> notes) {
+        noteSource = notes;
+        if(searchResults == null) {
+            differ.submitList(noteSource);
+        }
+    }
+
+    public void showSearchResults(List<NoteSummary> results) {
+        searchResults = results;
+        differ.submitList(searchResults);
+    }
+
+    public void clearSearch() {
+        if(searchResults != null) {
+            searchResults = null;
+            differ.submitList(noteSource);
+        }
+    }
+
+    public void updateSearchResult(NoteSummary note) {
+        if(searchResults == null) {
+            return;
+        }
+        ArrayList<NoteSummary> results = new ArrayList<>(searchResults);
+        for(int i = 0; i < results.size(); i++) {
+            NoteSummary result = results.get(i);
+            if(result.getId() == note.getId()) {
+                results.set(i, result instanceof SearchHit ? ((SearchHit) result).withSummary(note) : note);
+                showSearchResults(results);
+                return;
             }
-        }, 500);
+        }
     }
 
-    public void cancelTimer() {
-        if(timer != null) {
-            timer.cancel();
+    public void removeSearchResult(int noteId) {
+        if(searchResults == null) {
+            return;
+        }
+        ArrayList<NoteSummary> results = new ArrayList<>(searchResults);
+        for(int i = 0; i < results.size(); i++) {
+            if(results.get(i).getId() == noteId) {
+                results.remove(i);
+                showSearchResults(results);
+                return;
+            }
         }
     }
+
+    public boolean isSelecting() {
+        return !selectedNoteIds.isEmpty();
+    }
+
+    public List<Integer> getSelectedNoteIds() {
+        return new ArrayList<>(selectedNoteIds);
+    }
+
+    public void clearSelection() {
+        if(selectedNoteIds.isEmpty()) {
+            return;
+        }
+        selectedNoteIds.clear();
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+        notesListener.onSelectionChanged(0);
+    }
+
+    private void toggleSelection(int position) {
+        int noteId = differ.getCurrentList().get(position).getId();
+        if(!selectedNoteIds.remove(noteId)) {
+            selectedNoteIds.add(noteId);
+        }
+        notifyItemChanged(position, PAYLOAD_SELECTION);
+        notesListener.onSelectionChanged(selectedNoteIds.size());
+    }
+
+    public boolean isShowingSearchResults() {
+        return searchResults != null;
+    }
 }
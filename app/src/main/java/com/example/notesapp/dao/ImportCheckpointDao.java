@@ -0,0 +1,20 @@
+package com.example.notesapp.dao;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Upsert;
+
+import com.example.notesapp.entities.ImportCheckpoint;
+
+@Dao
+public interface ImportCheckpointDao {
+
+    @Query("SELECT line FROM import_checkpoints WHERE source = :source")
+    Integer getLine(String source);
+
+    @Upsert
+    void upsertCheckpoint(ImportCheckpoint checkpoint);
+
+    @Query("DELETE FROM import_checkpoints WHERE source = :source")
+    void deleteCheckpoint(String source);
+}
@@ -1,24 +1,192 @@
 package com.example.notesapp.dao;
 
+import android.database.Cursor;
+import android.os.Build;
+
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
-import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Update;
 
 import com.example.notesapp.entities.Note;
+import com.example.notesapp.entities.NoteSummary;
 
 import java.util.List;
 
 @Dao
 public interface NoteDao {
 
-    @Query("SELECT * FROM notes ORDER BY id DESC")
-    List<Note> getAllNotes();
+    int BATCH_CHUNK_SIZE = 500;
+
+    String SUMMARY_COLUMNS = "notes.id, notes.title, notes.date_time, notes.subtitle, " +
+            "substr(notes.note_text, 1, " + NoteSummary.PREVIEW_LENGTH + ") AS note_preview, " +
+            "notes.image_path, notes.color, notes.created_at, notes.modified_at, notes.version, " +
+            "notes.image_width, notes.image_height, notes.image_color";
+
+    /**
+     * Date sorts page with a {@code (date, id)} keyset on the matching two-column index. Devices
+     * before API 26 ship SQLite older than 3.15, which has no row values, so they run the same
+     * range spelled out with a {@code date <= ?} bound that the index still serves.
+     */
+    String BY_MODIFIED = "SELECT " + SUMMARY_COLUMNS + " FROM notes " +
+            "WHERE (modified_at, id) < (:beforeModifiedAt, :beforeId) " +
+            "ORDER BY modified_at DESC, id DESC LIMIT :limit";
+    String BY_MODIFIED_COMPAT = "SELECT " + SUMMARY_COLUMNS + " FROM notes " +
+            "WHERE modified_at <= :beforeModifiedAt AND (modified_at < :beforeModifiedAt OR id < :beforeId) " +
+            "ORDER BY modified_at DESC, id DESC LIMIT :limit";
+    String BY_CREATED = "SELECT " + SUMMARY_COLUMNS + " FROM notes " +
+            "WHERE (created_at, id) < (:beforeCreatedAt, :beforeId) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit";
+    String BY_CREATED_COMPAT = "SELECT " + SUMMARY_COLUMNS + " FROM notes " +
+            "WHERE created_at <= :beforeCreatedAt AND (created_at < :beforeCreatedAt OR id < :beforeId) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit";
+    String MODIFIED_BETWEEN = "SELECT " + SUMMARY_COLUMNS + " FROM notes " +
+            "WHERE modified_at BETWEEN :fromMillis AND :toMillis ORDER BY modified_at DESC, id DESC LIMIT :limit";
+    String CREATED_BETWEEN = "SELECT " + SUMMARY_COLUMNS + " FROM notes " +
+            "WHERE created_at BETWEEN :fromMillis AND :toMillis ORDER BY created_at DESC, id DESC LIMIT :limit";
+    String VERSIONS_SINCE = "SELECT id, version, modified_at FROM notes WHERE modified_at >= :sinceMillis";
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM notes WHERE id < :beforeId ORDER BY id DESC LIMIT :limit")
+    List<NoteSummary> getNoteSummariesBefore(int beforeId, int limit);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM notes WHERE id > :afterId ORDER BY id ASC LIMIT :limit")
+    List<NoteSummary> getNoteSummariesAfter(int afterId, int limit);
+
+    @Query(BY_MODIFIED)
+    List<NoteSummary> getNoteSummariesByModifiedRowValue(long beforeModifiedAt, int beforeId, int limit);
+
+    @Query(BY_MODIFIED_COMPAT)
+    List<NoteSummary> getNoteSummariesByModifiedCompat(long beforeModifiedAt, int beforeId, int limit);
+
+    @Query(BY_CREATED)
+    List<NoteSummary> getNoteSummariesByCreatedRowValue(long beforeCreatedAt, int beforeId, int limit);
+
+    @Query(BY_CREATED_COMPAT)
+    List<NoteSummary> getNoteSummariesByCreatedCompat(long beforeCreatedAt, int beforeId, int limit);
+
+    /**
+     * Notes last modified before {@code (beforeModifiedAt, beforeId)}, newest first. Start with
+     * {@code Long.MAX_VALUE} and {@code Integer.MAX_VALUE}, then pass the last row of each page.
+     */
+    default List<NoteSummary> getNoteSummariesByModified(long beforeModifiedAt, int beforeId, int limit) {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return getNoteSummariesByModifiedRowValue(beforeModifiedAt, beforeId, limit);
+        }
+        return getNoteSummariesByModifiedCompat(beforeModifiedAt, beforeId, limit);
+    }
+
+    /**
+     * Like {@link #getNoteSummariesByModified} for creation time.
+     */
+    default List<NoteSummary> getNoteSummariesByCreated(long beforeCreatedAt, int beforeId, int limit) {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return getNoteSummariesByCreatedRowValue(beforeCreatedAt, beforeId, limit);
+        }
+        return getNoteSummariesByCreatedCompat(beforeCreatedAt, beforeId, limit);
+    }
+
+    /**
+     * Notes modified within {@code [fromMillis, toMillis]}, both ends included, newest first.
+     */
+    @Query(MODIFIED_BETWEEN)
+    List<NoteSummary> getNoteSummariesModifiedBetween(long fromMillis, long toMillis, int limit);
+
+    /**
+     * Notes created within {@code [fromMillis, toMillis]}, both ends included, newest first.
+     */
+    @Query(CREATED_BETWEEN)
+    List<NoteSummary> getNoteSummariesCreatedBetween(long fromMillis, long toMillis, int limit);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM notes JOIN notes_fts ON notes.id = notes_fts.docid " +
+            "WHERE notes_fts MATCH :match ORDER BY notes.id DESC LIMIT :limit")
+    List<NoteSummary> searchNoteSummaries(String match, int limit);
+
+    @Query("SELECT " + SUMMARY_COLUMNS + " FROM notes WHERE id = :id")
+    NoteSummary getNoteSummaryById(int id);
+
+    @Query("SELECT * FROM notes WHERE id = :id")
+    Note getNoteById(int id);
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insertNote(Note note);
+    @Query("SELECT * FROM notes WHERE id > :afterId ORDER BY id ASC LIMIT :limit")
+    List<Note> getNotesAfter(int afterId, int limit);
+
+    @Query("SELECT id, version, modified_at FROM notes")
+    Cursor getNoteVersionsCursor();
+
+    /**
+     * Versions of the notes modified at or after {@code sinceMillis}, found on the
+     * {@code (modified_at, id)} index instead of a table scan.
+     */
+    @Query(VERSIONS_SINCE)
+    Cursor getNoteVersionsSinceCursor(long sinceMillis);
+
+    @Query("SELECT * FROM notes WHERE id IN (:ids)")
+    List<Note> getNotesByIds(List<Integer> ids);
+
+    @Query("SELECT DISTINCT image_path FROM notes WHERE image_path IS NOT NULL AND image_path != ''")
+    List<String> getImagePaths();
+
+    @Query("SELECT COUNT(*) FROM notes")
+    int getNoteCount();
+
+    @Insert
+    long insertNote(Note note);
+
+    @Update
+    int updateNote(Note note);
+
+    /**
+     * Saves an edit only if the row is still at {@code version}. A null {@code noteText} keeps
+     * the stored text, so an unchanged large note is not sent to SQLite again.
+     */
+    @Query("UPDATE notes SET title = :title, subtitle = :subtitle, note_text = COALESCE(:noteText, note_text), " +
+            "color = :color, image_path = :imagePath, web_link = :webLink, image_width = :imageWidth, " +
+            "image_height = :imageHeight, image_color = :imageColor, modified_at = :modifiedAt, " +
+            "version = version + 1 WHERE id = :id AND version = :version")
+    int updateNoteIfVersion(int id, int version, String title, String subtitle, String noteText, String color,
+                            String imagePath, String webLink, int imageWidth, int imageHeight, int imageColor,
+                            long modifiedAt);
 
     @Delete
     void deleteNote(Note note);
+
+    @Insert
+    List<Long> insertNotes(List<Note> notes);
+
+    @Update
+    int updateNotes(List<Note> notes);
+
+    @Query("DELETE FROM notes WHERE id IN (:ids)")
+    int deleteNotesChunk(List<Integer> ids);
+
+    @Query("UPDATE notes SET image_width = :width, image_height = :height, image_color = :color " +
+            "WHERE id = :id AND image_path = :imagePath")
+    int updateImageInfo(int id, String imagePath, int width, int height, int color);
+
+    @Query("UPDATE notes SET color = :color, modified_at = :now, version = version + 1 WHERE id IN (:ids)")
+    int updateNotesColorChunk(List<Integer> ids, String color, long now);
+
+    @Transaction
+    default int deleteNotesByIds(List<Integer> ids) {
+        int deleted = 0;
+        for(int start = 0; start < ids.size(); start += BATCH_CHUNK_SIZE) {
+            deleted += deleteNotesChunk(ids.subList(start, Math.min(ids.size(), start + BATCH_CHUNK_SIZE)));
+        }
+        return deleted;
+    }
+
+    @Transaction
+    default int updateNotesColor(List<Integer> ids, String color, long now) {
+        int updated = 0;
+        for(int start = 0; start < ids.size(); start += BATCH_CHUNK_SIZE) {
+            updated += updateNotesColorChunk(
+                    ids.subList(start, Math.min(ids.size(), start + BATCH_CHUNK_SIZE)),
+                    color,
+                    now
+            );
+        }
+        return updated;
+    }
 }
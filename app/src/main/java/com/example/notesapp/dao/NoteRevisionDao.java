@@ -0,0 +1,77 @@
+package com.example.notesapp.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Transaction;
+import androidx.room.Update;
+
+import com.example.notesapp.entities.NoteRevision;
+import com.example.notesapp.entities.NoteRevisionSummary;
+
+import java.util.List;
+
+@Dao
+public interface NoteRevisionDao {
+
+    @Insert
+    long insertRevision(NoteRevision revision);
+
+    @Update
+    void updateRevisions(List<NoteRevision> revisions);
+
+    @Query("SELECT MAX(id) FROM note_revisions WHERE note_id = :noteId")
+    Integer getLatestRevisionId(int noteId);
+
+    @Query("SELECT * FROM note_revisions WHERE id = :id")
+    NoteRevision getRevision(int id);
+
+    @Query("SELECT id, note_id, created_at, title FROM note_revisions WHERE note_id = :noteId ORDER BY id DESC")
+    List<NoteRevisionSummary> getRevisionSummaries(int noteId);
+
+    /**
+     * The revisions needed to rebuild {@code revisionId}: the closest snapshot at or before it and
+     * every delta after that snapshot, oldest first.
+     */
+    @Query("SELECT * FROM note_revisions WHERE note_id = :noteId AND id <= :revisionId AND id >= " +
+            "(SELECT MAX(id) FROM note_revisions WHERE note_id = :noteId AND id <= :revisionId AND snapshot = 1) " +
+            "ORDER BY id ASC")
+    List<NoteRevision> getRevisionChain(int noteId, int revisionId);
+
+    @Query("SELECT * FROM note_revisions WHERE note_id = :noteId ORDER BY id ASC")
+    List<NoteRevision> getRevisions(int noteId);
+
+    /**
+     * Notes with more than one revision in some bucket older than {@code cutoff}, or with more
+     * than {@code maxPerNote} revisions overall.
+     */
+    @Query("SELECT note_id FROM note_revisions WHERE created_at < :cutoff " +
+            "GROUP BY note_id, created_at / :bucketMillis HAVING COUNT(*) > 1 " +
+            "UNION SELECT note_id FROM note_revisions GROUP BY note_id HAVING COUNT(*) > :maxPerNote")
+    List<Integer> getNoteIdsToCompact(long cutoff, long bucketMillis, int maxPerNote);
+
+    @Query("DELETE FROM note_revisions WHERE id IN (:ids)")
+    int deleteRevisionsChunk(List<Integer> ids);
+
+    @Query("DELETE FROM note_revisions WHERE note_id IN (:noteIds)")
+    int deleteRevisionsForNotesChunk(List<Integer> noteIds);
+
+    @Query("DELETE FROM note_revisions WHERE note_id NOT IN (SELECT id FROM notes)")
+    int deleteOrphanRevisions();
+
+    @Transaction
+    default void deleteRevisions(List<Integer> ids) {
+        for(int start = 0; start < ids.size(); start += NoteDao.BATCH_CHUNK_SIZE) {
+            deleteRevisionsChunk(ids.subList(start, Math.min(ids.size(), start + NoteDao.BATCH_CHUNK_SIZE)));
+        }
+    }
+
+    @Transaction
+    default void deleteRevisionsForNotes(List<Integer> noteIds) {
+        for(int start = 0; start < noteIds.size(); start += NoteDao.BATCH_CHUNK_SIZE) {
+            deleteRevisionsForNotesChunk(
+                    noteIds.subList(start, Math.min(noteIds.size(), start + NoteDao.BATCH_CHUNK_SIZE))
+            );
+        }
+    }
+}
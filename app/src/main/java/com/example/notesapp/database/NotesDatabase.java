@@ -3,28 +3,46 @@ package com.example.notesapp.database;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
+import com.example.notesapp.dao.ImportCheckpointDao;
 import com.example.notesapp.dao.NoteDao;
+import com.example.notesapp.dao.NoteRevisionDao;
+import com.example.notesapp.entities.ImportCheckpoint;
 import com.example.notesapp.entities.Note;
+import com.example.notesapp.entities.NoteFts;
+import com.example.notesapp.entities.NoteRevision;
 
-@Database(entities = Note.class, version = 1, exportSchema = false)
+@Database(entities = {Note.class, NoteFts.class, NoteRevision.class, ImportCheckpoint.class}, version = 8, exportSchema = true)
 public abstract class NotesDatabase extends RoomDatabase {
 
     private static NotesDatabase notesDatabase;
 
+    static final Callback NARROW_FTS_TRIGGERS = new Callback() {
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            NotesMigrations.narrowFtsUpdateTriggers(db);
+        }
+    };
+
     public static synchronized NotesDatabase  getDatabase(Context context) {
         if(notesDatabase == null) {
             notesDatabase = Room.databaseBuilder(
                     context,
                     NotesDatabase.class,
                     "notes_db"
-            ).build();
+            ).addMigrations(NotesMigrations.ALL).addCallback(NARROW_FTS_TRIGGERS).build();
         }
         return notesDatabase;
     }
 
     public abstract NoteDao getNoteDao();
+
+    public abstract NoteRevisionDao getNoteRevisionDao();
+
+    public abstract ImportCheckpointDao getImportCheckpointDao();
 }
@@ -0,0 +1,168 @@
+package com.example.notesapp.database;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.notesapp.utilities.NoteDates;
+
+/**
+ * Every schema change of {@link NotesDatabase}, in order. A new version must add its migration
+ * here and to {@link #ALL}; the exported schemas live under {@code app/schemas}.
+ */
+public final class NotesMigrations {
+
+    private static final String FTS_TEXT_CHANGED = "OLD.`title` IS NOT NEW.`title` " +
+            "OR OLD.`subtitle` IS NOT NEW.`subtitle` OR OLD.`note_text` IS NOT NEW.`note_text`";
+
+    private NotesMigrations() {
+    }
+
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `notes_fts` USING FTS4(" +
+                    "`title` TEXT, `subtitle` TEXT, `note_text` TEXT, content=`notes`)");
+            createFtsUpdateTriggers(database);
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_BEFORE_DELETE " +
+                    "BEFORE DELETE ON `notes` BEGIN DELETE FROM `notes_fts` WHERE `docid`=OLD.`rowid`; END");
+            database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_AFTER_INSERT " +
+                    "AFTER INSERT ON `notes` BEGIN INSERT INTO `notes_fts`(`docid`, `title`, `subtitle`, `note_text`) " +
+                    "VALUES (NEW.`rowid`, NEW.`title`, NEW.`subtitle`, NEW.`note_text`); END");
+            database.execSQL("INSERT INTO `notes_fts`(`notes_fts`) VALUES ('rebuild')");
+        }
+    };
+
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `notes` ADD COLUMN `version` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `notes` ADD COLUMN `created_at` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE `notes` ADD COLUMN `modified_at` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_created_at` ON `notes` (`created_at`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_modified_at` ON `notes` (`modified_at`)");
+            // Only timestamp columns change here, so the FTS rows stay valid without re-indexing.
+            dropFtsUpdateTriggers(database);
+            SupportSQLiteStatement update = database.compileStatement(
+                    "UPDATE `notes` SET `created_at` = ?, `modified_at` = ? WHERE `id` = ?"
+            );
+            NoteDates.LegacyParser parser = new NoteDates.LegacyParser();
+            try(Cursor cursor = database.query("SELECT `id`, `date_time` FROM `notes`")) {
+                while(cursor.moveToNext()) {
+                    long millis = parser.parse(cursor.getString(1));
+                    if(millis > 0) {
+                        update.bindLong(1, millis);
+                        update.bindLong(2, millis);
+                        update.bindLong(3, cursor.getInt(0));
+                        update.executeUpdateDelete();
+                    }
+                }
+            }
+            createFtsUpdateTriggers(database);
+        }
+    };
+
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `notes` ADD COLUMN `image_width` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE `notes` ADD COLUMN `image_height` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE `notes` ADD COLUMN `image_color` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `note_revisions` (" +
+                    "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `note_id` INTEGER NOT NULL, " +
+                    "`created_at` INTEGER NOT NULL, `snapshot` INTEGER NOT NULL, `title` TEXT, `subtitle` TEXT, " +
+                    "`text_prefix` INTEGER NOT NULL, `text_suffix` INTEGER NOT NULL, `text_inserted` TEXT)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_note_revisions_note_id_id` " +
+                    "ON `note_revisions` (`note_id`, `id`)");
+        }
+    };
+
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `import_checkpoints` (" +
+                    "`source` TEXT NOT NULL, `line` INTEGER NOT NULL, PRIMARY KEY(`source`))");
+        }
+    };
+
+    /**
+     * Date sorts page by {@code (date, id)}, so each date index carries the id as well and both
+     * the keyset condition and the order come straight from the index.
+     */
+    public static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("DROP INDEX IF EXISTS `index_notes_created_at`");
+            database.execSQL("DROP INDEX IF EXISTS `index_notes_modified_at`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_created_at_id` ON `notes` (`created_at`, `id`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_notes_modified_at_id` ON `notes` (`modified_at`, `id`)");
+        }
+    };
+
+    /**
+     * Room's own content-sync update triggers fire on any update of a note, so a recolor or a
+     * measured image size deleted and re-tokenized the whole FTS row. These keep Room's names but
+     * only fire when an indexed column is set to a different value; other updates touch one row.
+     */
+    static void createFtsUpdateTriggers(SupportSQLiteDatabase database) {
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_BEFORE_UPDATE " +
+                "BEFORE UPDATE OF `title`, `subtitle`, `note_text` ON `notes` WHEN " + FTS_TEXT_CHANGED +
+                " BEGIN DELETE FROM `notes_fts` WHERE `docid`=OLD.`rowid`; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_notes_fts_AFTER_UPDATE " +
+                "AFTER UPDATE OF `title`, `subtitle`, `note_text` ON `notes` WHEN " + FTS_TEXT_CHANGED +
+                " BEGIN INSERT INTO `notes_fts`(`docid`, `title`, `subtitle`, `note_text`) " +
+                "VALUES (NEW.`rowid`, NEW.`title`, NEW.`subtitle`, NEW.`note_text`); END");
+    }
+
+    /**
+     * Room creates its catch-all update triggers with the database and again after every
+     * migration, so each open swaps them for {@link #createFtsUpdateTriggers the narrow ones}.
+     * A no-op once they are in place.
+     */
+    static void narrowFtsUpdateTriggers(SupportSQLiteDatabase database) {
+        try(Cursor cursor = database.query("SELECT `sql` FROM `sqlite_master` WHERE `type` = 'trigger' " +
+                "AND `name` = 'room_fts_content_sync_notes_fts_AFTER_UPDATE'")) {
+            if(cursor.moveToFirst() && cursor.getString(0).contains("UPDATE OF")) {
+                return;
+            }
+        }
+        database.beginTransaction();
+        try {
+            dropFtsUpdateTriggers(database);
+            createFtsUpdateTriggers(database);
+            database.setTransactionSuccessful();
+        }finally {
+            database.endTransaction();
+        }
+    }
+
+    static void dropFtsUpdateTriggers(SupportSQLiteDatabase database) {
+        database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_BEFORE_UPDATE");
+        database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_notes_fts_AFTER_UPDATE");
+    }
+
+    public static final Migration[] ALL = {
+            MIGRATION_1_2,
+            MIGRATION_2_3,
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7,
+            MIGRATION_7_8
+    };
+}
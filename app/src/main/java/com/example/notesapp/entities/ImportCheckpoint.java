@@ -0,0 +1,44 @@
+package com.example.notesapp.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * How many lines of an export have been imported, written in the same transaction as the batch
+ * that got there so a resumed import never inserts a batch twice.
+ */
+@Entity(tableName = "import_checkpoints")
+public class ImportCheckpoint {
+
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "source")
+    private String source;
+
+    @ColumnInfo(name = "line")
+    private int line;
+
+    public ImportCheckpoint(@NonNull String source, int line) {
+        this.source = source;
+        this.line = line;
+    }
+
+    @NonNull
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(@NonNull String source) {
+        this.source = source;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public void setLine(int line) {
+        this.line = line;
+    }
+}
@@ -3,12 +3,14 @@ package com.example.notesapp.entities;
 import androidx.annotation.NonNull;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-import java.io.Serializable;
-
-@Entity(tableName = "notes")
-public class Note implements Serializable {
+@Entity(
+        tableName = "notes",
+        indices = {@Index(value = {"created_at", "id"}), @Index(value = {"modified_at", "id"})}
+)
+public class Note {
 
     @PrimaryKey(autoGenerate = true)
     private int id;
@@ -34,6 +36,24 @@ public class Note implements Serializable {
     @ColumnInfo(name = "web_link")
     private String webLink;
 
+    @ColumnInfo(name = "version", defaultValue = "0")
+    private int version;
+
+    @ColumnInfo(name = "created_at", defaultValue = "0")
+    private long createdAt;
+
+    @ColumnInfo(name = "modified_at", defaultValue = "0")
+    private long modifiedAt;
+
+    @ColumnInfo(name = "image_width", defaultValue = "0")
+    private int imageWidth;
+
+    @ColumnInfo(name = "image_height", defaultValue = "0")
+    private int imageHeight;
+
+    @ColumnInfo(name = "image_color", defaultValue = "0")
+    private int imageColor;
+
     public int getId() {
         return id;
     }
@@ -98,6 +118,54 @@ public class Note implements Serializable {
         this.webLink = webLink;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getModifiedAt() {
+        return modifiedAt;
+    }
+
+    public void setModifiedAt(long modifiedAt) {
+        this.modifiedAt = modifiedAt;
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public void setImageWidth(int imageWidth) {
+        this.imageWidth = imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public void setImageHeight(int imageHeight) {
+        this.imageHeight = imageHeight;
+    }
+
+    public int getImageColor() {
+        return imageColor;
+    }
+
+    public void setImageColor(int imageColor) {
+        this.imageColor = imageColor;
+    }
+
     @NonNull
     @Override
     public String toString() {
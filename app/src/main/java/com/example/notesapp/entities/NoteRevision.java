@@ -0,0 +1,117 @@
+package com.example.notesapp.entities;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * One saved version of a note. Title and subtitle are stored whole; the note text is stored as a
+ * delta against the previous revision of the same note unless {@code snapshot} is set, in which
+ * case {@code text_inserted} holds the full text.
+ */
+@Entity(
+        tableName = "note_revisions",
+        indices = {@Index(value = {"note_id", "id"})}
+)
+public class NoteRevision {
+
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+
+    @ColumnInfo(name = "note_id")
+    private int noteId;
+
+    @ColumnInfo(name = "created_at")
+    private long createdAt;
+
+    @ColumnInfo(name = "snapshot")
+    private boolean snapshot;
+
+    @ColumnInfo(name = "title")
+    private String title;
+
+    @ColumnInfo(name = "subtitle")
+    private String subtitle;
+
+    @ColumnInfo(name = "text_prefix")
+    private int textPrefix;
+
+    @ColumnInfo(name = "text_suffix")
+    private int textSuffix;
+
+    @ColumnInfo(name = "text_inserted")
+    private String textInserted;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(int noteId) {
+        this.noteId = noteId;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public void setSnapshot(boolean snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getSubtitle() {
+        return subtitle;
+    }
+
+    public void setSubtitle(String subtitle) {
+        this.subtitle = subtitle;
+    }
+
+    public int getTextPrefix() {
+        return textPrefix;
+    }
+
+    public void setTextPrefix(int textPrefix) {
+        this.textPrefix = textPrefix;
+    }
+
+    public int getTextSuffix() {
+        return textSuffix;
+    }
+
+    public void setTextSuffix(int textSuffix) {
+        this.textSuffix = textSuffix;
+    }
+
+    public String getTextInserted() {
+        return textInserted;
+    }
+
+    public void setTextInserted(String textInserted) {
+        this.textInserted = textInserted;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.notesapp.entities;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * Revision row without its text, for listing a note's history.
+ */
+public class NoteRevisionSummary {
+
+    @ColumnInfo(name = "id")
+    private int id;
+
+    @ColumnInfo(name = "note_id")
+    private int noteId;
+
+    @ColumnInfo(name = "created_at")
+    private long createdAt;
+
+    @ColumnInfo(name = "title")
+    private String title;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(int noteId) {
+        this.noteId = noteId;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+}
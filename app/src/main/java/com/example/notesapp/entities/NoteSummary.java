@@ -0,0 +1,158 @@
+package com.example.notesapp.entities;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+
+public class NoteSummary {
+
+    public static final int PREVIEW_LENGTH = 200;
+
+    @ColumnInfo(name = "id")
+    private int id;
+
+    @ColumnInfo(name = "title")
+    private String title;
+
+    @ColumnInfo(name = "date_time")
+    private String dateTime;
+
+    @ColumnInfo(name = "subtitle")
+    private String subtitle;
+
+    @ColumnInfo(name = "note_preview")
+    private String notePreview;
+
+    @ColumnInfo(name = "image_path")
+    private String imagePath;
+
+    @ColumnInfo(name = "color")
+    private String color;
+
+    @ColumnInfo(name = "created_at")
+    private long createdAt;
+
+    @ColumnInfo(name = "modified_at")
+    private long modifiedAt;
+
+    @ColumnInfo(name = "version")
+    private int version;
+
+    @ColumnInfo(name = "image_width")
+    private int imageWidth;
+
+    @ColumnInfo(name = "image_height")
+    private int imageHeight;
+
+    @ColumnInfo(name = "image_color")
+    private int imageColor;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getDateTime() {
+        return dateTime;
+    }
+
+    public void setDateTime(String dateTime) {
+        this.dateTime = dateTime;
+    }
+
+    public String getSubtitle() {
+        return subtitle;
+    }
+
+    public void setSubtitle(String subtitle) {
+        this.subtitle = subtitle;
+    }
+
+    public String getNotePreview() {
+        return notePreview;
+    }
+
+    public void setNotePreview(String notePreview) {
+        this.notePreview = notePreview;
+    }
+
+    public String getImagePath() {
+        return imagePath;
+    }
+
+    public void setImagePath(String imagePath) {
+        this.imagePath = imagePath;
+    }
+
+    public String getColor() {
+        return color;
+    }
+
+    public void setColor(String color) {
+        this.color = color;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getModifiedAt() {
+        return modifiedAt;
+    }
+
+    public void setModifiedAt(long modifiedAt) {
+        this.modifiedAt = modifiedAt;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public int getImageWidth() {
+        return imageWidth;
+    }
+
+    public void setImageWidth(int imageWidth) {
+        this.imageWidth = imageWidth;
+    }
+
+    public int getImageHeight() {
+        return imageHeight;
+    }
+
+    public void setImageHeight(int imageHeight) {
+        this.imageHeight = imageHeight;
+    }
+
+    public int getImageColor() {
+        return imageColor;
+    }
+
+    public void setImageColor(int imageColor) {
+        this.imageColor = imageColor;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return title + " : " + dateTime;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.notesapp.images;
+
+import android.content.Context;
+import android.util.AttributeSet;
+
+import com.makeramen.roundedimageview.RoundedImageView;
+
+/**
+ * Rounded image view that takes its height from a known aspect ratio instead of from the
+ * drawable, so a card keeps the same size from placeholder to decoded thumbnail.
+ */
+public class AspectRatioImageView extends RoundedImageView {
+
+    private int ratioWidth;
+    private int ratioHeight;
+
+    public AspectRatioImageView(Context context) {
+        super(context);
+    }
+
+    public AspectRatioImageView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public AspectRatioImageView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+    }
+
+    /**
+     * Pass zeros when the size is unknown to measure from the drawable as usual.
+     */
+    public void setAspectRatio(int width, int height) {
+        if(width != ratioWidth || height != ratioHeight) {
+            ratioWidth = width;
+            ratioHeight = height;
+            requestLayout();
+        }
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if(ratioWidth <= 0 || ratioHeight <= 0 || MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+        int width = MeasureSpec.getSize(widthMeasureSpec);
+        int height = (int) ((long) width * ratioHeight / ratioWidth);
+        setMeasuredDimension(width, resolveSize(height, heightMeasureSpec));
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.notesapp.images;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.ColorDrawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Decodes the note editor's image off the main thread at the width the view is shown at. Until
+ * the decode finishes the view keeps the image's aspect ratio and shows its placeholder color.
+ * The bitmap being replaced is handed back to the decoder as {@code inBitmap}, so swapping
+ * images does not allocate a new buffer each time.
+ * <p>
+ * Owned by one activity; call {@link #release()} when it is destroyed.
+ */
+public class EditorImageLoader {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ImageStore imageStore;
+    private Future<?> pending;
+    private int generation;
+    private Bitmap shownBitmap;
+    private Bitmap reusableBitmap;
+
+    public EditorImageLoader(Context context) {
+        imageStore = ImageStore.getInstance(context);
+    }
+
+    /**
+     * Shows {@code imagePath} in {@code imageView}; {@code info} may be {@code null} if the size
+     * is not known yet.
+     */
+    public void load(final AspectRatioImageView imageView, final String imagePath, ImageInfo info) {
+        clear(imageView);
+        if(info != null) {
+            imageView.setAspectRatio(info.width, info.height);
+            imageView.setImageDrawable(new ColorDrawable(info.color));
+        }
+        imageView.setVisibility(View.VISIBLE);
+
+        final int targetWidth = targetWidth(imageView);
+        final int requestGeneration = generation;
+        pending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                File rendition = imageStore.getRendition(imagePath, targetWidth);
+                final Bitmap bitmap = decode(
+                        rendition != null ? rendition.getPath() : imagePath,
+                        targetWidth,
+                        takeReusableBitmap()
+                );
+                if(bitmap == null) {
+                    return;
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(requestGeneration == generation) {
+                            shownBitmap = bitmap;
+                            imageView.setImageBitmap(bitmap);
+                        }else {
+                            offerReusableBitmap(bitmap);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    public void clear(AspectRatioImageView imageView) {
+        generation++;
+        if(pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+        imageView.setAspectRatio(0, 0);
+        imageView.setImageDrawable(null);
+        if(shownBitmap != null) {
+            offerReusableBitmap(shownBitmap);
+            shownBitmap = null;
+        }
+    }
+
+    public void release() {
+        generation++;
+        executor.shutdownNow();
+        shownBitmap = null;
+        synchronized(this) {
+            reusableBitmap = null;
+        }
+    }
+
+    private synchronized Bitmap takeReusableBitmap() {
+        Bitmap bitmap = reusableBitmap;
+        reusableBitmap = null;
+        return bitmap;
+    }
+
+    private synchronized void offerReusableBitmap(Bitmap bitmap) {
+        if(bitmap.isMutable()) {
+            reusableBitmap = bitmap;
+        }
+    }
+
+    private static int targetWidth(View imageView) {
+        if(imageView.getWidth() > 0) {
+            return imageView.getWidth();
+        }
+        View parent = (View) imageView.getParent();
+        if(parent != null && parent.getWidth() > 0) {
+            return parent.getWidth() - parent.getPaddingLeft() - parent.getPaddingRight();
+        }
+        return imageView.getResources().getDisplayMetrics().widthPixels;
+    }
+
+    /**
+     * Decodes with the largest power-of-two subsampling that keeps the bitmap at least
+     * {@code targetWidth} wide, into {@code reusable} when it is big enough.
+     */
+    static Bitmap decode(String imagePath, int targetWidth, Bitmap reusable) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(imagePath, options);
+        if(options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int inSampleSize = ThumbnailLoader.calculateInSampleSize(options.outWidth, targetWidth);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = inSampleSize;
+        options.inMutable = true;
+        long width = (options.outWidth + inSampleSize - 1) / inSampleSize;
+        long height = (options.outHeight + inSampleSize - 1) / inSampleSize;
+        if(reusable != null && width * height * 4 <= reusable.getAllocationByteCount()) {
+            options.inBitmap = reusable;
+        }
+        try {
+            return BitmapFactory.decodeFile(imagePath, options);
+        }catch (IllegalArgumentException exception) {
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(imagePath, options);
+        }
+    }
+}
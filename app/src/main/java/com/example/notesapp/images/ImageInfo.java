@@ -0,0 +1,60 @@
+package com.example.notesapp.images;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+
+/**
+ * Pixel size and average color of an image, read when the image is attached so cards can reserve
+ * their height and paint a placeholder before any thumbnail is decoded.
+ */
+public class ImageInfo {
+
+    /** Width the image is sampled down to for the average color. */
+    private static final int COLOR_SAMPLE_WIDTH = 16;
+
+    public final int width;
+    public final int height;
+    public final int color;
+
+    public ImageInfo(int width, int height, int color) {
+        this.width = width;
+        this.height = height;
+        this.color = color;
+    }
+
+    /**
+     * Reads the size with a bounds-only decode and the color from a tiny subsampled decode.
+     * Blocks on file I/O; returns {@code null} if the file is not a decodable image.
+     */
+    public static ImageInfo read(String imagePath) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(imagePath, options);
+        if(options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int width = options.outWidth;
+        int height = options.outHeight;
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = ThumbnailLoader.calculateInSampleSize(width, COLOR_SAMPLE_WIDTH);
+        Bitmap sample = BitmapFactory.decodeFile(imagePath, options);
+        int color = sample != null ? averageColor(sample) : Color.DKGRAY;
+        if(sample != null) {
+            sample.recycle();
+        }
+        return new ImageInfo(width, height, color);
+    }
+
+    private static int averageColor(Bitmap bitmap) {
+        int[] pixels = new int[bitmap.getWidth() * bitmap.getHeight()];
+        bitmap.getPixels(pixels, 0, bitmap.getWidth(), 0, 0, bitmap.getWidth(), bitmap.getHeight());
+        long red = 0, green = 0, blue = 0;
+        for(int pixel : pixels) {
+            red += Color.red(pixel);
+            green += Color.green(pixel);
+            blue += Color.blue(pixel);
+        }
+        return Color.rgb((int) (red / pixels.length), (int) (green / pixels.length), (int) (blue / pixels.length));
+    }
+}
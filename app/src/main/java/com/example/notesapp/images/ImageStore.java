@@ -0,0 +1,246 @@
+package com.example.notesapp.images;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.notesapp.R;
+import com.example.notesapp.database.NotesDatabase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * App-private store for note images, keyed by the SHA-256 of their bytes. An attachment is
+ * streamed into the store once, so the same photo attached to many notes is one file that every
+ * note refers to. Card and editor sized renditions are written next to it at ingest, and
+ * {@link #collectGarbage()} removes files no note refers to any more.
+ */
+public class ImageStore {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int RENDITION_QUALITY = 85;
+    /** Unreferenced blobs younger than this may belong to a note that is still being edited. */
+    private static final long GC_GRACE_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final String CARD = "_card.jpg";
+    private static final String EDITOR = "_editor.jpg";
+
+    private static final ExecutorService STORE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private static ImageStore imageStore;
+
+    private final Context context;
+    private final File blobsDir;
+    private final File renditionsDir;
+    private final int cardWidth;
+    private final int editorWidth;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface Callback {
+        void onStored(String imagePath, ImageInfo info);
+
+        void onFailed(Exception exception);
+    }
+
+    public static synchronized ImageStore getInstance(Context context) {
+        if(imageStore == null) {
+            imageStore = new ImageStore(context.getApplicationContext());
+        }
+        return imageStore;
+    }
+
+    private ImageStore(Context context) {
+        this.context = context;
+        File root = new File(context.getFilesDir(), "images");
+        blobsDir = new File(root, "blobs");
+        renditionsDir = new File(root, "renditions");
+        editorWidth = context.getResources().getDisplayMetrics().widthPixels;
+        cardWidth = editorWidth / context.getResources().getInteger(R.integer.note_grid_span_count);
+    }
+
+    /**
+     * Streams the image behind {@code uri} into the store on a background thread and reports the
+     * stored path, which is what notes should keep in {@code image_path}.
+     */
+    public void ingest(final Uri uri, final Callback callback) {
+        STORE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    InputStream inputStream = context.getContentResolver().openInputStream(uri);
+                    if(inputStream == null) {
+                        throw new IOException("Cannot open " + uri);
+                    }
+                    final File blob = store(Channels.newChannel(inputStream));
+                    final ImageInfo info = ImageInfo.read(blob.getPath());
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onStored(blob.getPath(), info);
+                        }
+                    });
+                }catch (final IOException exception) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onFailed(exception);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Blocking variant for callers already on a background thread.
+     */
+    public String ingest(File source) throws IOException {
+        return store(new FileInputStream(source).getChannel()).getPath();
+    }
+
+    public boolean contains(String imagePath) {
+        return imagePath != null && imagePath.startsWith(blobsDir.getPath() + File.separator);
+    }
+
+    /**
+     * Returns the smallest rendition at least {@code targetWidth} wide, writing it first if it went
+     * missing, or {@code null} if {@code imagePath} is not in the store. Blocks on file I/O.
+     */
+    public File getRendition(String imagePath, int targetWidth) {
+        if(!contains(imagePath)) {
+            return null;
+        }
+        File blob = new File(imagePath);
+        boolean card = targetWidth <= cardWidth;
+        File rendition = new File(renditionsDir, blob.getName() + (card ? CARD : EDITOR));
+        if(!rendition.isFile() && blob.isFile()) {
+            writeRendition(blob, rendition, card ? cardWidth : editorWidth);
+        }
+        return rendition.isFile() ? rendition : null;
+    }
+
+    /**
+     * Deletes, on a background thread, every blob and rendition no note refers to.
+     */
+    public void collectGarbage() {
+        STORE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<String> imagePaths = NotesDatabase.getDatabase(context).getNoteDao().getImagePaths();
+                Set<String> referenced = new HashSet<>();
+                for(String imagePath : imagePaths) {
+                    if(contains(imagePath)) {
+                        referenced.add(new File(imagePath).getName());
+                    }
+                }
+                long cutoff = System.currentTimeMillis() - GC_GRACE_MILLIS;
+                File[] blobs = blobsDir.listFiles();
+                if(blobs != null) {
+                    for(File blob : blobs) {
+                        if(!referenced.contains(blob.getName()) && blob.lastModified() < cutoff) {
+                            blob.delete();
+                        }
+                    }
+                }
+                File[] renditions = renditionsDir.listFiles();
+                if(renditions != null) {
+                    for(File rendition : renditions) {
+                        String name = rendition.getName();
+                        int suffix = name.indexOf('_');
+                        if(suffix > 0 && !new File(blobsDir, name.substring(0, suffix)).exists()) {
+                            rendition.delete();
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private File store(ReadableByteChannel source) throws IOException {
+        if(!blobsDir.exists() && !blobsDir.mkdirs()) {
+            throw new IOException("Cannot create " + blobsDir);
+        }
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }catch (NoSuchAlgorithmException exception) {
+            throw new IOException(exception);
+        }
+        File temp = File.createTempFile("ingest", ".tmp", blobsDir);
+        try(ReadableByteChannel in = source;
+            FileChannel out = new FileOutputStream(temp).getChannel()) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while(in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while(buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+        }catch (IOException exception) {
+            temp.delete();
+            throw exception;
+        }
+
+        File blob = new File(blobsDir, toHex(digest.digest()));
+        if(blob.exists()) {
+            temp.delete();
+            blob.setLastModified(System.currentTimeMillis());
+        }else if(!temp.renameTo(blob)) {
+            temp.delete();
+            throw new IOException("Cannot store " + blob);
+        }
+        writeRendition(blob, new File(renditionsDir, blob.getName() + CARD), cardWidth);
+        writeRendition(blob, new File(renditionsDir, blob.getName() + EDITOR), editorWidth);
+        return blob;
+    }
+
+    private void writeRendition(File blob, File rendition, int width) {
+        if(rendition.isFile() || (!renditionsDir.exists() && !renditionsDir.mkdirs())) {
+            return;
+        }
+        Bitmap bitmap = ThumbnailLoader.decodeSampled(blob.getPath(), width);
+        if(bitmap == null) {
+            return;
+        }
+        File temp = new File(renditionsDir, rendition.getName() + ".tmp");
+        try(OutputStream outputStream = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, RENDITION_QUALITY, outputStream);
+        }catch (IOException exception) {
+            temp.delete();
+            return;
+        }finally {
+            bitmap.recycle();
+        }
+        if(!temp.renameTo(rendition)) {
+            temp.delete();
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString();
+    }
+}
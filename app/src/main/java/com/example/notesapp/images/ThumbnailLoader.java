@@ -0,0 +1,221 @@
+package com.example.notesapp.images;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.drawable.ColorDrawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.example.notesapp.R;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads note card images as thumbnails scaled to the card width. Decoded thumbnails are kept in a
+ * memory cache bounded in bytes and keyed by path and width, so binding a card touches no files.
+ * Images in the {@link ImageStore} are decoded from its small renditions; any other image is
+ * scaled once and kept on disk keyed by the source path and its modification time, read on the
+ * decode threads, so an image changed between runs is never served stale.
+ */
+public class ThumbnailLoader {
+
+    private static final int DECODE_THREADS = 2;
+    private static final int DISK_QUALITY = 85;
+
+    private static ThumbnailLoader thumbnailLoader;
+
+    private final File diskCacheDir;
+    private final ImageStore imageStore;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ExecutorService executor = Executors.newFixedThreadPool(DECODE_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if(thumbnailLoader == null) {
+            thumbnailLoader = new ThumbnailLoader(context.getApplicationContext());
+        }
+        return thumbnailLoader;
+    }
+
+    private ThumbnailLoader(Context context) {
+        diskCacheDir = new File(context.getCacheDir(), "thumbnails");
+        imageStore = ImageStore.getInstance(context);
+        int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+        memoryCache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+        };
+    }
+
+    public interface InfoCallback {
+        void onInfo(ImageInfo info);
+    }
+
+    public void load(ImageView imageView, String imagePath, int targetWidth) {
+        load(imageView, imagePath, targetWidth, 0);
+    }
+
+    /**
+     * Shows {@code placeholderColor}, unless it is 0, until the thumbnail is ready.
+     */
+    public void load(final ImageView imageView, final String imagePath, final int targetWidth,
+                     int placeholderColor) {
+        cancel(imageView);
+        final String key = imagePath + ":" + targetWidth;
+        Bitmap cached = memoryCache.get(key);
+        if(cached != null) {
+            imageView.setImageBitmap(cached);
+            return;
+        }
+        imageView.setImageDrawable(placeholderColor != 0 ? new ColorDrawable(placeholderColor) : null);
+
+        final Request request = new Request();
+        request.future = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = loadThumbnail(imagePath, targetWidth);
+                if(bitmap == null) {
+                    return;
+                }
+                memoryCache.put(key, bitmap);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(imageView.getTag(R.id.tag_thumbnail_request) == request) {
+                            imageView.setTag(R.id.tag_thumbnail_request, null);
+                            imageView.setImageBitmap(bitmap);
+                        }
+                    }
+                });
+            }
+        });
+        imageView.setTag(R.id.tag_thumbnail_request, request);
+    }
+
+    /**
+     * Reads {@link ImageInfo} on the decode threads and delivers it, possibly {@code null}, on the
+     * main thread.
+     */
+    public void readInfo(final String imagePath, final InfoCallback callback) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ImageInfo info = ImageInfo.read(imagePath);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onInfo(info);
+                    }
+                });
+            }
+        });
+    }
+
+    public void cancel(ImageView imageView) {
+        Object tag = imageView.getTag(R.id.tag_thumbnail_request);
+        if(tag instanceof Request) {
+            ((Request) tag).future.cancel(true);
+            imageView.setTag(R.id.tag_thumbnail_request, null);
+        }
+    }
+
+    private Bitmap loadThumbnail(String imagePath, int targetWidth) {
+        if(imageStore.contains(imagePath)) {
+            File rendition = imageStore.getRendition(imagePath, targetWidth);
+            return decodeSampled(rendition != null ? rendition.getPath() : imagePath, targetWidth);
+        }
+        String diskKey = imagePath + ":" + new File(imagePath).lastModified() + ":" + targetWidth;
+        File cacheFile = new File(diskCacheDir, hash(diskKey) + ".jpg");
+        if(cacheFile.exists()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(cacheFile.getPath());
+            if(bitmap != null) {
+                return bitmap;
+            }
+        }
+        if(Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        Bitmap bitmap = decodeSampled(imagePath, targetWidth);
+        if(bitmap == null) {
+            return null;
+        }
+        writeToDisk(cacheFile, bitmap);
+        return bitmap;
+    }
+
+    static Bitmap decodeSampled(String imagePath, int targetWidth) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(imagePath, options);
+        if(options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        options.inSampleSize = calculateInSampleSize(options.outWidth, targetWidth);
+        options.inJustDecodeBounds = false;
+        Bitmap bitmap = BitmapFactory.decodeFile(imagePath, options);
+        if(bitmap == null || bitmap.getWidth() <= targetWidth) {
+            return bitmap;
+        }
+        int targetHeight = Math.max(1, bitmap.getHeight() * targetWidth / bitmap.getWidth());
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, targetWidth, targetHeight, true);
+        if(scaled != bitmap) {
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    static int calculateInSampleSize(int sourceWidth, int targetWidth) {
+        int inSampleSize = 1;
+        while(targetWidth > 0 && sourceWidth / (inSampleSize * 2) >= targetWidth) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    private void writeToDisk(File cacheFile, Bitmap bitmap) {
+        if(!diskCacheDir.exists() && !diskCacheDir.mkdirs()) {
+            return;
+        }
+        File temp = new File(diskCacheDir, cacheFile.getName() + ".tmp");
+        try(OutputStream outputStream = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, DISK_QUALITY, outputStream);
+        }catch (IOException exception) {
+            temp.delete();
+            return;
+        }
+        if(!temp.renameTo(cacheFile)) {
+            temp.delete();
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder();
+            for(byte b : digest) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        }catch (NoSuchAlgorithmException exception) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    private static class Request {
+        Future<?> future;
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.notesapp.listeners;
 
-import com.example.notesapp.entities.Note;
+import com.example.notesapp.entities.NoteSummary;
 
 public interface NotesListener {
-    void onNoteClicked(Note note, int position);
+    void onNoteClicked(NoteSummary note, int position);
+
+    void onSelectionChanged(int selectedCount);
 }
@@ -0,0 +1,203 @@
+package com.example.notesapp.paging;
+
+import androidx.lifecycle.LifecycleOwner;
+
+import com.example.notesapp.entities.NoteSummary;
+import com.example.notesapp.repository.NotesRepository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps a bounded window of pages of the notes list in memory. Pages are keyed on the note id,
+ * so loading the next page costs the same no matter how deep the user has scrolled.
+ */
+public class NotesPager {
+
+    public static final int PAGE_SIZE = 30;
+    public static final int PREFETCH_DISTANCE = 10;
+    private static final int MAX_PAGES = 5;
+
+    private final NotesRepository notesRepository;
+    private final LifecycleOwner lifecycleOwner;
+    private final List<NoteSummary> notes = new ArrayList<>();
+    private final Listener listener;
+    private final ArrayDeque<Integer> pageSizes = new ArrayDeque<>();
+
+    private boolean loading;
+    private boolean reachedStart = true;
+    private boolean reachedEnd;
+    private NotesRepository.Request pendingRequest;
+
+    public interface Listener {
+        void onWindowChanged(List<NoteSummary> window);
+    }
+
+    public NotesPager(NotesRepository notesRepository, LifecycleOwner lifecycleOwner, Listener listener) {
+        this.notesRepository = notesRepository;
+        this.lifecycleOwner = lifecycleOwner;
+        this.listener = listener;
+    }
+
+    public void onVisibleRangeChanged(int firstVisible, int lastVisible) {
+        if(lastVisible >= notes.size() - PREFETCH_DISTANCE) {
+            loadAfter();
+        }
+        if(firstVisible <= PREFETCH_DISTANCE) {
+            loadBefore();
+        }
+    }
+
+    public void loadAfter() {
+        if(loading || reachedEnd) {
+            return;
+        }
+        int beforeId = notes.isEmpty() ? Integer.MAX_VALUE : notes.get(notes.size() - 1).getId();
+        load(beforeId, PAGE_SIZE, false, false);
+    }
+
+    public void loadBefore() {
+        if(loading || reachedStart || notes.isEmpty()) {
+            return;
+        }
+        load(notes.get(0).getId(), PAGE_SIZE, true, false);
+    }
+
+    public void reload() {
+        load(Integer.MAX_VALUE, PAGE_SIZE, false, true);
+    }
+
+    /**
+     * Reloads the notes currently in the window, keeping the window anchored where the user is.
+     */
+    public void refresh() {
+        int anchor = reachedStart || notes.isEmpty() ? Integer.MAX_VALUE : notes.get(0).getId() + 1;
+        load(anchor, Math.max(notes.size(), PAGE_SIZE), false, true);
+    }
+
+    /**
+     * Moves the window back to the newest notes if the user had scrolled away from them. New
+     * notes themselves arrive through {@link #refresh()} when the table is invalidated.
+     */
+    public void showStart() {
+        if(!reachedStart) {
+            reload();
+        }
+    }
+
+    public void replaceNote(NoteSummary note) {
+        int position = positionOf(note.getId());
+        if(position != -1) {
+            notes.set(position, note);
+            publish();
+        }
+    }
+
+    public void removeNote(int noteId) {
+        int position = positionOf(noteId);
+        if(position == -1) {
+            return;
+        }
+        notes.remove(position);
+        ArrayList<Integer> sizes = new ArrayList<>(pageSizes);
+        int pageEnd = 0;
+        for(int i = 0; i < sizes.size(); i++) {
+            pageEnd += sizes.get(i);
+            if(position < pageEnd) {
+                if(sizes.get(i) == 1) {
+                    sizes.remove(i);
+                }else{
+                    sizes.set(i, sizes.get(i) - 1);
+                }
+                break;
+            }
+        }
+        pageSizes.clear();
+        pageSizes.addAll(sizes);
+        publish();
+    }
+
+    private int positionOf(int noteId) {
+        for(int i = 0; i < notes.size(); i++) {
+            if(notes.get(i).getId() == noteId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void load(int key, final int limit, final boolean before, final boolean replace) {
+        if(pendingRequest != null) {
+            pendingRequest.cancel();
+        }
+        loading = true;
+        final boolean fromStart = key == Integer.MAX_VALUE;
+        NotesRepository.Callback<List<NoteSummary>> callback = new NotesRepository.Callback<List<NoteSummary>>() {
+            @Override
+            public void onResult(List<NoteSummary> page) {
+                pendingRequest = null;
+                loading = false;
+                if(replace) {
+                    replaceWindow(page, limit, fromStart);
+                }else if(before) {
+                    prependPage(page);
+                }else{
+                    appendPage(page);
+                }
+            }
+        };
+        if(before) {
+            pendingRequest = notesRepository.loadNotesAfter(lifecycleOwner, key, limit, callback);
+        }else{
+            pendingRequest = notesRepository.loadNotesBefore(lifecycleOwner, key, limit, callback);
+        }
+    }
+
+    private void appendPage(List<NoteSummary> page) {
+        reachedEnd = page.size() < PAGE_SIZE;
+        if(page.isEmpty()) {
+            return;
+        }
+        notes.addAll(page);
+        pageSizes.addLast(page.size());
+        if(pageSizes.size() > MAX_PAGES) {
+            int count = pageSizes.pollFirst();
+            notes.subList(0, count).clear();
+            reachedStart = false;
+        }
+        publish();
+    }
+
+    private void prependPage(List<NoteSummary> page) {
+        reachedStart = page.size() < PAGE_SIZE;
+        if(page.isEmpty()) {
+            return;
+        }
+        notes.addAll(0, page);
+        pageSizes.addFirst(page.size());
+        if(pageSizes.size() > MAX_PAGES) {
+            int count = pageSizes.pollLast();
+            notes.subList(notes.size() - count, notes.size()).clear();
+            reachedEnd = false;
+        }
+        publish();
+    }
+
+    private void replaceWindow(List<NoteSummary> window, int limit, boolean fromStart) {
+        notes.clear();
+        notes.addAll(window);
+        pageSizes.clear();
+        for(int start = 0; start < window.size(); start += PAGE_SIZE) {
+            pageSizes.addLast(Math.min(PAGE_SIZE, window.size() - start));
+        }
+        reachedStart = fromStart;
+        reachedEnd = window.size() < limit;
+        publish();
+    }
+
+    private void publish() {
+        listener.onWindowChanged(Collections.unmodifiableList(new ArrayList<>(notes)));
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.notesapp.repository;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.TextUtils;
+
+import androidx.lifecycle.LifecycleOwner;
+
+import com.example.notesapp.entities.Note;
+import com.example.notesapp.revisions.RevisionStore;
+
+/**
+ * Saves the note being edited while the user types. Edits are coalesced until the editor has
+ * been idle for {@link #IDLE_MILLIS}, or for at most {@link #MAX_DELAY_MILLIS} during continuous
+ * typing, and scheduled autosaves wait for the previous write to finish. Each write goes through
+ * {@link NotesRepository#updateNote} so only the columns that changed are touched.
+ *
+ * <p>Repository writes run one at a time in submission order, so an explicit save or an onPause
+ * flush can be queued right behind a write still in flight, starting from the version that write
+ * will produce. Nothing here ever blocks the main thread.
+ *
+ * <p>All methods must be called on the main thread.
+ */
+public class NoteAutosaver {
+
+    static final long IDLE_MILLIS = 1000;
+    static final long MAX_DELAY_MILLIS = 5000;
+
+    /**
+     * Supplies the editor state and hears about autosaves that did not land.
+     */
+    public interface Editor {
+        /** Builds a note from what is on screen. Id, version and creation time are filled in here. */
+        Note snapshot();
+
+        /** Another writer saved the note first. Autosave stops until the next explicit save. */
+        void onConflict();
+
+        /** The write failed. Autosave stops until the next explicit save. */
+        void onSaveFailed(Exception exception);
+    }
+
+    /**
+     * Outcome of an explicit {@link #save}. Exactly one method is called.
+     */
+    public interface SaveCallback {
+        void onSaved(int noteId);
+
+        void onConflict();
+
+        void onFailure(Exception exception);
+    }
+
+    private final LifecycleOwner owner;
+    private final NotesRepository repository;
+    private final Editor editor;
+    /** Saves made through this autosaver share one history revision while they keep coming. */
+    private final long revisionSession = RevisionStore.newSession();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private Note baseline;
+    /** Bumped whenever the baseline is replaced, so results of older writes no longer apply. */
+    private int generation;
+    private int writesInFlight;
+    private boolean insertInFlight;
+    private SaveCallback pendingSave;
+    private boolean flushAfterWrite;
+    private boolean stopped;
+    private long firstEditAt;
+
+    public NoteAutosaver(LifecycleOwner owner, NotesRepository repository, Editor editor) {
+        this.owner = owner;
+        this.repository = repository;
+        this.editor = editor;
+    }
+
+    /**
+     * Sets the note as last stored in the database, or {@code null} for a note not saved yet.
+     * Pending autosaves are dropped since the editor has just been filled from this note.
+     */
+    public void setBaseline(Note note) {
+        baseline = note;
+        generation++;
+        handler.removeCallbacks(flushRunnable);
+        firstEditAt = 0;
+    }
+
+    public Note getBaseline() {
+        return baseline;
+    }
+
+    public void onEdited() {
+        if(stopped) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        if(firstEditAt == 0) {
+            firstEditAt = now;
+        }
+        handler.removeCallbacks(flushRunnable);
+        long delay = Math.min(IDLE_MILLIS, firstEditAt + MAX_DELAY_MILLIS - now);
+        handler.postDelayed(flushRunnable, Math.max(0, delay));
+    }
+
+    /**
+     * Image size measured after an older note was opened. It is stored without bumping the
+     * version or modified time and folded into the baseline, so it does not count as an edit.
+     */
+    public void onImageMeasured(String imagePath, int width, int height, int color) {
+        if(baseline == null || writesInFlight > 0 || baseline.getImageWidth() > 0
+                || !TextUtils.equals(imagePath, baseline.getImagePath())) {
+            return;
+        }
+        baseline.setImageWidth(width);
+        baseline.setImageHeight(height);
+        baseline.setImageColor(color);
+        repository.updateImageInfo(owner, baseline.getId(), imagePath, width, height, color);
+    }
+
+    /**
+     * Saves immediately and re-enables autosave if a conflict or failure had stopped it. The
+     * caller validates the note first.
+     */
+    public void save(SaveCallback callback) {
+        stopped = false;
+        handler.removeCallbacks(flushRunnable);
+        if(insertInFlight) {
+            pendingSave = callback;
+            return;
+        }
+        write(callback);
+    }
+
+    /**
+     * Queues whatever is left without waiting for it. Called from onPause; repository writes run
+     * to completion even if the activity is destroyed meanwhile.
+     */
+    public void flushNow() {
+        handler.removeCallbacks(flushRunnable);
+        if(stopped) {
+            return;
+        }
+        if(insertInFlight) {
+            flushAfterWrite = true;
+            return;
+        }
+        write(null);
+    }
+
+    /**
+     * Drops pending autosaves and stops scheduling new ones, e.g. before the note is deleted.
+     */
+    public void stop() {
+        stopped = true;
+        flushAfterWrite = false;
+        handler.removeCallbacks(flushRunnable);
+    }
+
+    private void flush() {
+        if(stopped) {
+            return;
+        }
+        if(writesInFlight > 0) {
+            flushAfterWrite = true;
+            return;
+        }
+        write(null);
+    }
+
+    private void write(final SaveCallback saveCallback) {
+        firstEditAt = 0;
+        flushAfterWrite = false;
+        final Note edited = editor.snapshot();
+        final int writeGeneration = generation;
+
+        if(baseline == null) {
+            if(saveCallback == null && !isSavable(edited)) {
+                return;
+            }
+            insertInFlight = true;
+            writesInFlight++;
+            repository.saveNote(owner, edited, revisionSession, new NotesRepository.Callback<Integer>() {
+                @Override
+                public void onResult(Integer noteId) {
+                    insertInFlight = false;
+                    writesInFlight--;
+                    edited.setId(noteId);
+                    if(writeGeneration == generation) {
+                        baseline = edited;
+                    }
+                    if(saveCallback != null) {
+                        saveCallback.onSaved(noteId);
+                    }
+                    afterWrite();
+                }
+
+                @Override
+                public void onFailure(Exception exception) {
+                    insertInFlight = false;
+                    writesInFlight--;
+                    onWriteFailed(saveCallback, writeGeneration, exception);
+                    afterWrite();
+                }
+            });
+            return;
+        }
+
+        // A note cleared down to nothing is most likely mid-rewrite; keep the saved version.
+        if(saveCallback == null && !isSavable(edited)) {
+            return;
+        }
+        final Note original = baseline;
+        edited.setId(original.getId());
+        edited.setDateTime(original.getDateTime());
+        edited.setCreatedAt(original.getCreatedAt());
+        edited.setVersion(original.getVersion());
+        if(!NotesRepository.hasChanges(original, edited)) {
+            if(saveCallback != null) {
+                saveCallback.onSaved(original.getId());
+            }
+            return;
+        }
+        // Assume the write lands so the next one can be queued right behind it.
+        edited.setVersion(original.getVersion() + 1);
+        baseline = edited;
+        writesInFlight++;
+        repository.updateNote(owner, original, edited, revisionSession, new NotesRepository.Callback<Boolean>() {
+            @Override
+            public void onResult(Boolean updated) {
+                writesInFlight--;
+                if(updated) {
+                    if(saveCallback != null) {
+                        saveCallback.onSaved(edited.getId());
+                    }
+                    afterWrite();
+                    return;
+                }
+                if(saveCallback != null) {
+                    saveCallback.onConflict();
+                }else if(writeGeneration == generation) {
+                    editor.onConflict();
+                }
+                if(writeGeneration == generation) {
+                    // Writes queued behind this one fail the same version check; ignore them.
+                    generation++;
+                    stop();
+                }
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                writesInFlight--;
+                onWriteFailed(saveCallback, writeGeneration, exception);
+            }
+        });
+    }
+
+    private void onWriteFailed(SaveCallback saveCallback, int writeGeneration, Exception exception) {
+        if(saveCallback != null) {
+            saveCallback.onFailure(exception);
+        }else if(writeGeneration == generation) {
+            editor.onSaveFailed(exception);
+        }
+        if(writeGeneration == generation) {
+            generation++;
+            stop();
+        }
+    }
+
+    private void afterWrite() {
+        if(writesInFlight > 0) {
+            return;
+        }
+        if(pendingSave != null) {
+            SaveCallback callback = pendingSave;
+            pendingSave = null;
+            write(callback);
+        }else if(flushAfterWrite && !stopped) {
+            write(null);
+        }
+    }
+
+    /**
+     * Same rule as the explicit save: a title and either a subtitle or some text. Autosave
+     * applies it to inserts and updates alike.
+     */
+    private static boolean isSavable(Note note) {
+        return !isBlank(note.getTitle()) && !(isBlank(note.getSubtitle()) && isBlank(note.getNoteText()));
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+}
@@ -0,0 +1,550 @@
+package com.example.notesapp.repository;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.room.InvalidationTracker;
+
+import com.example.notesapp.dao.NoteDao;
+import com.example.notesapp.database.NotesDatabase;
+import com.example.notesapp.entities.Note;
+import com.example.notesapp.entities.NoteRevisionSummary;
+import com.example.notesapp.entities.NoteSummary;
+import com.example.notesapp.revisions.RevisionStore;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single entry point for all note database work. Reads run on a small bounded I/O pool; writes
+ * run one at a time, in submission order, on their own unbounded queue so they are never
+ * rejected. Results and failures are delivered on the main thread. Reads are cancelled when the
+ * owning lifecycle is destroyed; writes always run to completion and only their callback is
+ * dropped.
+ */
+public class NotesRepository {
+
+    private static final String TAG = "NotesRepository";
+    private static final int IO_THREADS = 2;
+    private static final int MAX_QUEUED_TASKS = 128;
+    private static final int MAX_CACHED_NOTE_CHARS = 1 << 20;
+
+    private static NotesRepository notesRepository;
+
+    private final NotesDatabase notesDatabase;
+    private final NoteDao noteDao;
+    private final RevisionStore revisionStore;
+    private final ThreadPoolExecutor ioExecutor;
+    private final ThreadPoolExecutor writeExecutor;
+    /** Guarded by {@code noteCache}. */
+    private int cacheGeneration;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+    private final LruCache<Integer, Note> noteCache = new LruCache<Integer, Note>(MAX_CACHED_NOTE_CHARS) {
+        @Override
+        protected int sizeOf(Integer id, Note note) {
+            return 1 + length(note.getTitle()) + length(note.getSubtitle()) + length(note.getNoteText());
+        }
+    };
+
+    public interface Callback<T> {
+        void onResult(T result);
+
+        /**
+         * Called instead of {@link #onResult} when the work threw or could not be queued.
+         */
+        default void onFailure(Exception exception) {
+        }
+    }
+
+    /**
+     * Told which notes a write through this repository inserted, changed or deleted. Called on
+     * the write thread once the write has committed.
+     */
+    public interface ChangeListener {
+        void onNotesChanged(Collection<Integer> noteIds);
+    }
+
+    public static synchronized NotesRepository getInstance(Context context) {
+        if(notesRepository == null) {
+            notesRepository = new NotesRepository(
+                    NotesDatabase.getDatabase(context.getApplicationContext())
+            );
+        }
+        return notesRepository;
+    }
+
+    private NotesRepository(NotesDatabase notesDatabase) {
+        this.notesDatabase = notesDatabase;
+        noteDao = notesDatabase.getNoteDao();
+        revisionStore = new RevisionStore(notesDatabase);
+        ioExecutor = new ThreadPoolExecutor(
+                IO_THREADS,
+                IO_THREADS,
+                30,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(MAX_QUEUED_TASKS)
+        );
+        ioExecutor.allowCoreThreadTimeOut(true);
+        writeExecutor = new ThreadPoolExecutor(
+                1,
+                1,
+                30,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>()
+        );
+        writeExecutor.allowCoreThreadTimeOut(true);
+        notesDatabase.getInvalidationTracker().addObserver(new InvalidationTracker.Observer("notes") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                invalidateCache();
+            }
+        });
+    }
+
+    public void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    private void notifyChanged(Collection<Integer> noteIds) {
+        if(noteIds.isEmpty()) {
+            return;
+        }
+        for(ChangeListener listener : changeListeners) {
+            listener.onNotesChanged(noteIds);
+        }
+    }
+
+    /**
+     * Drops every cached note and makes reads that started before now skip caching their row,
+     * since it may predate the write that caused this.
+     */
+    private void invalidateCache() {
+        synchronized(noteCache) {
+            cacheGeneration++;
+            noteCache.evictAll();
+        }
+    }
+
+    private void cacheNote(int generation, Note note) {
+        synchronized(noteCache) {
+            if(generation == cacheGeneration) {
+                noteCache.put(note.getId(), note);
+            }
+        }
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * Calls {@code onChanged} on the main thread whenever the notes table is written, by anyone,
+     * coalescing every invalidation that arrives within one frame into a single call.
+     */
+    public void observeNotes(LifecycleOwner owner, final Runnable onChanged) {
+        final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                onChanged.run();
+            }
+        };
+        final Runnable scheduleFrame = new Runnable() {
+            @Override
+            public void run() {
+                Choreographer choreographer = Choreographer.getInstance();
+                choreographer.removeFrameCallback(frameCallback);
+                choreographer.postFrameCallback(frameCallback);
+            }
+        };
+        final InvalidationTracker.Observer observer = new InvalidationTracker.Observer("notes") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                mainHandler.post(scheduleFrame);
+            }
+        };
+        notesDatabase.getInvalidationTracker().addObserver(observer);
+        owner.getLifecycle().addObserver(new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+                if(event == Lifecycle.Event.ON_DESTROY) {
+                    source.getLifecycle().removeObserver(this);
+                    notesDatabase.getInvalidationTracker().removeObserver(observer);
+                    mainHandler.removeCallbacks(scheduleFrame);
+                    Choreographer.getInstance().removeFrameCallback(frameCallback);
+                }
+            }
+        });
+    }
+
+    public Request loadNotesBefore(LifecycleOwner owner, final int beforeId, final int limit,
+                                   Callback<List<NoteSummary>> callback) {
+        return read(owner, new Callable<List<NoteSummary>>() {
+            @Override
+            public List<NoteSummary> call() {
+                return noteDao.getNoteSummariesBefore(beforeId, limit);
+            }
+        }, callback);
+    }
+
+    public Request loadNotesAfter(LifecycleOwner owner, final int afterId, final int limit,
+                                  Callback<List<NoteSummary>> callback) {
+        return read(owner, new Callable<List<NoteSummary>>() {
+            @Override
+            public List<NoteSummary> call() {
+                List<NoteSummary> page = noteDao.getNoteSummariesAfter(afterId, limit);
+                Collections.reverse(page);
+                return page;
+            }
+        }, callback);
+    }
+
+    public Note getCachedNote(int id) {
+        return noteCache.get(id);
+    }
+
+    public Request getNote(LifecycleOwner owner, final int id, Callback<Note> callback) {
+        return read(owner, new Callable<Note>() {
+            @Override
+            public Note call() {
+                int generation;
+                synchronized(noteCache) {
+                    generation = cacheGeneration;
+                }
+                Note note = noteDao.getNoteById(id);
+                if(note != null) {
+                    cacheNote(generation, note);
+                }
+                return note;
+            }
+        }, callback);
+    }
+
+    public Request getNoteSummary(LifecycleOwner owner, final int id, Callback<NoteSummary> callback) {
+        return read(owner, new Callable<NoteSummary>() {
+            @Override
+            public NoteSummary call() {
+                return noteDao.getNoteSummaryById(id);
+            }
+        }, callback);
+    }
+
+    /**
+     * Inserts a new note. Existing notes are saved through {@link #updateNote} so the version
+     * check always applies. {@code session} comes from {@link RevisionStore#newSession()} and lets
+     * later saves of the same editor fold into this revision.
+     */
+    public Request saveNote(LifecycleOwner owner, final Note note, final long session, Callback<Integer> callback) {
+        if(note.getId() != 0) {
+            throw new IllegalArgumentException("saveNote inserts new notes only, use updateNote");
+        }
+        return write(owner, new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                int noteId = notesDatabase.runInTransaction(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int noteId = (int) noteDao.insertNote(note);
+                        revisionStore.record(noteId, note, session);
+                        return noteId;
+                    }
+                });
+                notifyChanged(Collections.singletonList(noteId));
+                return noteId;
+            }
+        }, callback);
+    }
+
+    /**
+     * Saves {@code edited} only if nobody else has saved the note since {@code original} was read,
+     * and not at all if nothing changed. The note text, the one column that can be large, is only
+     * sent to SQLite when it changed. The callback receives {@code false} when another writer got
+     * there first. Revisions are recorded for {@code session} as in {@link #saveNote}.
+     */
+    public Request updateNote(LifecycleOwner owner, final Note original, final Note edited, final long session,
+                              Callback<Boolean> callback) {
+        return write(owner, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                if(!hasChanges(original, edited)) {
+                    return true;
+                }
+                boolean saved = notesDatabase.runInTransaction(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        revisionStore.recordBaseline(original.getId());
+                        int rows = noteDao.updateNoteIfVersion(
+                                original.getId(),
+                                original.getVersion(),
+                                edited.getTitle(),
+                                edited.getSubtitle(),
+                                TextUtils.equals(original.getNoteText(), edited.getNoteText())
+                                        ? null
+                                        : edited.getNoteText(),
+                                edited.getColor(),
+                                edited.getImagePath(),
+                                edited.getWebLink(),
+                                edited.getImageWidth(),
+                                edited.getImageHeight(),
+                                edited.getImageColor(),
+                                edited.getModifiedAt()
+                        );
+                        if(rows != 1) {
+                            return false;
+                        }
+                        revisionStore.record(original.getId(), edited, session);
+                        return true;
+                    }
+                });
+                if(saved) {
+                    notifyChanged(Collections.singletonList(original.getId()));
+                }
+                return saved;
+            }
+        }, callback);
+    }
+
+    /**
+     * Stores an image size measured after the fact. Not an edit: version and modified time stay
+     * as they are, and nothing is written if the note's image has changed meanwhile.
+     */
+    public Request updateImageInfo(LifecycleOwner owner, final int noteId, final String imagePath,
+                                   final int width, final int height, final int color) {
+        return write(owner, new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                int rows = noteDao.updateImageInfo(noteId, imagePath, width, height, color);
+                if(rows > 0) {
+                    notifyChanged(Collections.singletonList(noteId));
+                }
+                return rows;
+            }
+        }, null);
+    }
+
+    /**
+     * Returns whether saving {@code edited} over {@code original} would write anything.
+     */
+    public static boolean hasChanges(Note original, Note edited) {
+        return !TextUtils.equals(original.getTitle(), edited.getTitle())
+                || !TextUtils.equals(original.getSubtitle(), edited.getSubtitle())
+                || !TextUtils.equals(original.getNoteText(), edited.getNoteText())
+                || !TextUtils.equals(original.getColor(), edited.getColor())
+                || !TextUtils.equals(original.getImagePath(), edited.getImagePath())
+                || !TextUtils.equals(original.getWebLink(), edited.getWebLink())
+                || original.getImageWidth() != edited.getImageWidth()
+                || original.getImageHeight() != edited.getImageHeight()
+                || original.getImageColor() != edited.getImageColor();
+    }
+
+    public Request deleteNote(LifecycleOwner owner, final Note note, Callback<Void> callback) {
+        return write(owner, new Callable<Void>() {
+            @Override
+            public Void call() {
+                notesDatabase.runInTransaction(new Runnable() {
+                    @Override
+                    public void run() {
+                        noteDao.deleteNote(note);
+                        revisionStore.forget(Collections.singletonList(note.getId()));
+                    }
+                });
+                notifyChanged(Collections.singletonList(note.getId()));
+                return null;
+            }
+        }, callback);
+    }
+
+    public Request deleteNotes(LifecycleOwner owner, final List<Integer> noteIds, Callback<Integer> callback) {
+        return write(owner, new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                int deleted = notesDatabase.runInTransaction(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int deleted = noteDao.deleteNotesByIds(noteIds);
+                        revisionStore.forget(noteIds);
+                        return deleted;
+                    }
+                });
+                notifyChanged(noteIds);
+                return deleted;
+            }
+        }, callback);
+    }
+
+    /**
+     * Lists a note's saved revisions, newest first.
+     */
+    public Request getRevisions(LifecycleOwner owner, final int noteId, Callback<List<NoteRevisionSummary>> callback) {
+        return read(owner, new Callable<List<NoteRevisionSummary>>() {
+            @Override
+            public List<NoteRevisionSummary> call() {
+                return notesDatabase.getNoteRevisionDao().getRevisionSummaries(noteId);
+            }
+        }, callback);
+    }
+
+    public Request getRevision(LifecycleOwner owner, final int noteId, final int revisionId,
+                               Callback<RevisionStore.Content> callback) {
+        return read(owner, new Callable<RevisionStore.Content>() {
+            @Override
+            public RevisionStore.Content call() {
+                return revisionStore.restore(noteId, revisionId);
+            }
+        }, callback);
+    }
+
+    /**
+     * Thins old note history in the background. Cheap when there is nothing to drop.
+     */
+    public Request compactRevisions(LifecycleOwner owner) {
+        return write(owner, new Callable<Void>() {
+            @Override
+            public Void call() {
+                revisionStore.compact(System.currentTimeMillis());
+                return null;
+            }
+        }, null);
+    }
+
+    public Request recolorNotes(LifecycleOwner owner, final List<Integer> noteIds, final String color,
+                                Callback<Integer> callback) {
+        return write(owner, new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                int updated = noteDao.updateNotesColor(noteIds, color, System.currentTimeMillis());
+                notifyChanged(noteIds);
+                return updated;
+            }
+        }, callback);
+    }
+
+    private <T> Request read(LifecycleOwner owner, Callable<T> work, Callback<T> callback) {
+        return submit(owner, work, callback, true);
+    }
+
+    private <T> Request write(LifecycleOwner owner, Callable<T> work, Callback<T> callback) {
+        return submit(owner, work, callback, false);
+    }
+
+    private <T> Request submit(LifecycleOwner owner, final Callable<T> work, final Callback<T> callback,
+                               final boolean cancelWork) {
+        final Request request = new Request(owner, cancelWork);
+        // A destroyed owner never sends ON_DESTROY again, so nothing would cancel the work or
+        // drop the callback later: drop a read now, and run a write without its callback.
+        boolean destroyed = owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED;
+        if(destroyed) {
+            request.done = true;
+            if(cancelWork) {
+                return request;
+            }
+        }
+        request.task = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public Void call() {
+                try {
+                    T result = work.call();
+                    if(!cancelWork) {
+                        // Don't wait for the invalidation tracker: a note reopened right after
+                        // this save must not come from the cache.
+                        invalidateCache();
+                    }
+                    deliver(request, callback, result, null);
+                }catch (Exception exception) {
+                    Log.e(TAG, "Note database work failed", exception);
+                    deliver(request, callback, null, exception);
+                }
+                return null;
+            }
+        });
+        try {
+            (cancelWork ? ioExecutor : writeExecutor).execute(request.task);
+        }catch (RejectedExecutionException exception) {
+            deliver(request, callback, null, exception);
+            return request;
+        }
+        // Results are posted to the main thread, so they can't arrive before this runs.
+        if(!destroyed) {
+            owner.getLifecycle().addObserver(request);
+        }
+        return request;
+    }
+
+    private <T> void deliver(final Request request, final Callback<T> callback, final T result,
+                             final Exception failure) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if(!request.finish() || callback == null) {
+                    return;
+                }
+                if(failure != null) {
+                    callback.onFailure(failure);
+                }else {
+                    callback.onResult(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * Handle for one queued piece of work, cancelled automatically when its owner is destroyed.
+     */
+    public class Request implements LifecycleEventObserver {
+
+        private final LifecycleOwner owner;
+        private final boolean cancelWork;
+        private FutureTask<Void> task;
+        private boolean done;
+
+        Request(LifecycleOwner owner, boolean cancelWork) {
+            this.owner = owner;
+            this.cancelWork = cancelWork;
+        }
+
+        public void cancel() {
+            if(done) {
+                return;
+            }
+            done = true;
+            owner.getLifecycle().removeObserver(this);
+            if(cancelWork && task.cancel(true)) {
+                ioExecutor.remove(task);
+            }
+        }
+
+        boolean finish() {
+            if(done) {
+                return false;
+            }
+            done = true;
+            owner.getLifecycle().removeObserver(this);
+            return true;
+        }
+
+        @Override
+        public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+            if(event == Lifecycle.Event.ON_DESTROY) {
+                cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.notesapp.revisions;
+
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import com.example.notesapp.dao.NoteDao;
+import com.example.notesapp.dao.NoteRevisionDao;
+import com.example.notesapp.database.NotesDatabase;
+import com.example.notesapp.entities.Note;
+import com.example.notesapp.entities.NoteRevision;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the history of every note in {@code note_revisions}. Each save is stored as a
+ * {@link TextDelta} against the previous revision, with a full snapshot at least every
+ * {@link #SNAPSHOT_INTERVAL} revisions so rebuilding any revision applies a bounded number of
+ * deltas. Autosaves of one editor session replace the revision that session wrote last, as long
+ * as they come within {@link #SESSION_IDLE_MILLIS} of each other, so typing keeps one revision
+ * per burst of edits. A revision written before the session started is never replaced.
+ * {@link #compact(long)} thins revisions older than {@link #KEEP_ALL_MILLIS} down to one per
+ * {@link #BUCKET_MILLIS}.
+ *
+ * <p>Revisions hold the title, subtitle and text only. Color, image and link are not part of the
+ * history and are left alone when a revision is restored.
+ *
+ * <p>Methods run on the repository's I/O threads; writes must be called inside the transaction
+ * that saves the note.
+ */
+public class RevisionStore {
+
+    static final int SNAPSHOT_INTERVAL = 16;
+    static final long SESSION_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    /** Session of saves that never merge, such as baselines. */
+    public static final long NO_SESSION = 0;
+    static final long KEEP_ALL_MILLIS = TimeUnit.DAYS.toMillis(1);
+    static final long BUCKET_MILLIS = TimeUnit.DAYS.toMillis(1);
+    static final int MAX_REVISIONS_PER_NOTE = 100;
+    private static final int MAX_CACHED_HEAD_CHARS = 1 << 20;
+
+    /**
+     * A fully rebuilt revision.
+     */
+    public static final class Content {
+        public final int revisionId;
+        public final long createdAt;
+        public final String title;
+        public final String subtitle;
+        public final String noteText;
+        final int sinceSnapshot;
+
+        Content(int revisionId, long createdAt, String title, String subtitle, String noteText,
+                int sinceSnapshot) {
+            this.revisionId = revisionId;
+            this.createdAt = createdAt;
+            this.title = title;
+            this.subtitle = subtitle;
+            this.noteText = noteText;
+            this.sinceSnapshot = sinceSnapshot;
+        }
+    }
+
+    private static final AtomicLong SESSIONS = new AtomicLong();
+
+    /**
+     * The revision a session wrote last. Only that revision can take the session's next save.
+     */
+    private static final class SessionHead {
+        final long session;
+        final int revisionId;
+        final long savedAt;
+
+        SessionHead(long session, int revisionId, long savedAt) {
+            this.session = session;
+            this.revisionId = revisionId;
+            this.savedAt = savedAt;
+        }
+    }
+
+    private final NotesDatabase notesDatabase;
+    private final NoteDao noteDao;
+    private final NoteRevisionDao revisionDao;
+    /** Latest revision per note, so recording a save does not rebuild the chain every time. */
+    private final LruCache<Integer, Content> heads = new LruCache<Integer, Content>(MAX_CACHED_HEAD_CHARS) {
+        @Override
+        protected int sizeOf(Integer noteId, Content content) {
+            return 1 + content.noteText.length();
+        }
+    };
+
+    /** Touched from writes only, which run one at a time. */
+    private final Map<Integer, SessionHead> sessionHeads = new HashMap<>();
+
+    /**
+     * A token for one editor session's saves. Each editor takes its own.
+     */
+    public static long newSession() {
+        return SESSIONS.incrementAndGet();
+    }
+
+    public RevisionStore(NotesDatabase notesDatabase) {
+        this.notesDatabase = notesDatabase;
+        noteDao = notesDatabase.getNoteDao();
+        revisionDao = notesDatabase.getNoteRevisionDao();
+    }
+
+    /**
+     * Records the note as currently stored if it has no history yet, so the first edit of a note
+     * written before revisions existed can still be undone.
+     */
+    public void recordBaseline(int noteId) {
+        if(revisionDao.getLatestRevisionId(noteId) != null) {
+            return;
+        }
+        Note note = noteDao.getNoteById(noteId);
+        if(note != null) {
+            record(noteId, note, NO_SESSION);
+        }
+    }
+
+    /**
+     * Records a save of {@code session}, or of no session with {@link #NO_SESSION}.
+     */
+    public void record(int noteId, Note note, long session) {
+        String noteText = note.getNoteText() == null ? "" : note.getNoteText();
+        long createdAt = note.getModifiedAt() > 0 ? note.getModifiedAt() : System.currentTimeMillis();
+        Integer latestId = revisionDao.getLatestRevisionId(noteId);
+        Content head = latestId == null ? null : head(noteId, latestId);
+        if(head != null
+                && TextUtils.equals(head.title, note.getTitle())
+                && TextUtils.equals(head.subtitle, note.getSubtitle())
+                && head.noteText.equals(noteText)) {
+            return;
+        }
+
+        SessionHead sessionHead = sessionHeads.get(noteId);
+        if(head != null && session != NO_SESSION && sessionHead != null
+                && sessionHead.session == session
+                && sessionHead.revisionId == head.revisionId
+                && createdAt - sessionHead.savedAt < SESSION_IDLE_MILLIS) {
+            NoteRevision revision = revisionDao.getRevision(head.revisionId);
+            revision.setCreatedAt(createdAt);
+            revision.setTitle(note.getTitle());
+            revision.setSubtitle(note.getSubtitle());
+            int sinceSnapshot = reencode(revision, head.noteText, head.sinceSnapshot, noteText);
+            revisionDao.updateRevisions(Collections.singletonList(revision));
+            heads.put(noteId, new Content(head.revisionId, createdAt, note.getTitle(), note.getSubtitle(), noteText,
+                    sinceSnapshot));
+            sessionHeads.put(noteId, new SessionHead(session, head.revisionId, createdAt));
+            return;
+        }
+
+        NoteRevision revision = new NoteRevision();
+        revision.setNoteId(noteId);
+        revision.setCreatedAt(createdAt);
+        revision.setTitle(note.getTitle());
+        revision.setSubtitle(note.getSubtitle());
+        int sinceSnapshot = encode(
+                revision,
+                head == null ? null : head.noteText,
+                head == null ? 0 : head.sinceSnapshot,
+                noteText
+        );
+        int revisionId = (int) revisionDao.insertRevision(revision);
+        heads.put(noteId, new Content(revisionId, createdAt, note.getTitle(), note.getSubtitle(), noteText,
+                sinceSnapshot));
+        if(session == NO_SESSION) {
+            sessionHeads.remove(noteId);
+        }else {
+            sessionHeads.put(noteId, new SessionHead(session, revisionId, createdAt));
+        }
+    }
+
+    public Content restore(int noteId, int revisionId) {
+        List<NoteRevision> chain = revisionDao.getRevisionChain(noteId, revisionId);
+        return chain.isEmpty() ? null : rebuild(chain);
+    }
+
+    public void forget(List<Integer> noteIds) {
+        revisionDao.deleteRevisionsForNotes(noteIds);
+        for(Integer noteId : noteIds) {
+            heads.remove(noteId);
+            sessionHeads.remove(noteId);
+        }
+    }
+
+    /**
+     * Drops history of deleted notes and thins old revisions. Only notes that have something to
+     * drop are read, one transaction per note.
+     */
+    public void compact(final long now) {
+        revisionDao.deleteOrphanRevisions();
+        List<Integer> noteIds = revisionDao.getNoteIdsToCompact(
+                now - KEEP_ALL_MILLIS,
+                BUCKET_MILLIS,
+                MAX_REVISIONS_PER_NOTE
+        );
+        for(final Integer noteId : noteIds) {
+            notesDatabase.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    List<NoteRevision> revisions = revisionDao.getRevisions(noteId);
+                    List<NoteRevision> kept = thin(revisions, now);
+                    if(kept.size() == revisions.size()) {
+                        return;
+                    }
+                    List<Integer> dropped = new ArrayList<>();
+                    int next = 0;
+                    for(NoteRevision revision : revisions) {
+                        if(next < kept.size() && kept.get(next) == revision) {
+                            next++;
+                        }else {
+                            dropped.add(revision.getId());
+                        }
+                    }
+                    revisionDao.updateRevisions(kept);
+                    revisionDao.deleteRevisions(dropped);
+                    heads.remove(noteId);
+                }
+            });
+        }
+    }
+
+    private Content head(int noteId, int latestId) {
+        Content cached = heads.get(noteId);
+        if(cached != null && cached.revisionId == latestId) {
+            return cached;
+        }
+        Content head = restore(noteId, latestId);
+        if(head != null) {
+            heads.put(noteId, head);
+        }
+        return head;
+    }
+
+    /**
+     * Rebuilds the last revision of {@code chain}, which must start with a snapshot.
+     */
+    static Content rebuild(List<NoteRevision> chain) {
+        String noteText = null;
+        for(NoteRevision revision : chain) {
+            noteText = delta(revision).applyTo(noteText);
+        }
+        NoteRevision last = chain.get(chain.size() - 1);
+        return new Content(last.getId(), last.getCreatedAt(), last.getTitle(), last.getSubtitle(), noteText,
+                chain.size() - 1);
+    }
+
+    /**
+     * Picks the revisions to keep out of a note's full history, oldest first, and re-encodes
+     * them as a fresh chain. The newest revision and everything younger than
+     * {@link #KEEP_ALL_MILLIS} are kept; older ones keep only the newest per bucket, and at most
+     * {@link #MAX_REVISIONS_PER_NOTE} survive overall. Texts are rebuilt in one forward pass that
+     * holds only the current text and the last kept one.
+     */
+    static List<NoteRevision> thin(List<NoteRevision> revisions, long now) {
+        int count = revisions.size();
+        long cutoff = now - KEEP_ALL_MILLIS;
+        boolean[] keep = new boolean[count];
+        int remaining = MAX_REVISIONS_PER_NOTE;
+        for(int i = count - 1; i >= 0 && remaining > 0; i--) {
+            long createdAt = revisions.get(i).getCreatedAt();
+            keep[i] = i == count - 1
+                    || createdAt >= cutoff
+                    || createdAt / BUCKET_MILLIS != revisions.get(i + 1).getCreatedAt() / BUCKET_MILLIS;
+            if(keep[i]) {
+                remaining--;
+            }
+        }
+
+        List<NoteRevision> kept = new ArrayList<>();
+        String noteText = null;
+        String previous = null;
+        int sinceSnapshot = 0;
+        for(int i = 0; i < count; i++) {
+            NoteRevision revision = revisions.get(i);
+            // Decode before re-encoding, the revision's own delta is overwritten below.
+            noteText = delta(revision).applyTo(noteText);
+            if(!keep[i]) {
+                continue;
+            }
+            sinceSnapshot = encode(revision, previous, sinceSnapshot, noteText);
+            previous = noteText;
+            kept.add(revision);
+        }
+        return kept;
+    }
+
+    /**
+     * Stores {@code noteText} in {@code revision} as a delta against {@code previous}, or as a
+     * snapshot when there is no previous text, the interval is up, or the delta would be more
+     * than half the text anyway. Returns the revision's distance from its snapshot.
+     */
+    private static int encode(NoteRevision revision, String previous, int sinceSnapshot, String noteText) {
+        TextDelta delta = null;
+        if(previous != null && sinceSnapshot + 1 < SNAPSHOT_INTERVAL) {
+            delta = TextDelta.between(previous, noteText);
+            if(delta.inserted.length() * 2 > noteText.length()) {
+                delta = null;
+            }
+        }
+        if(delta == null || (delta.prefix == 0 && delta.suffix == 0)) {
+            delta = TextDelta.snapshot(noteText);
+        }
+        boolean snapshot = delta.prefix == 0 && delta.suffix == 0;
+        revision.setSnapshot(snapshot);
+        revision.setTextPrefix(delta.prefix);
+        revision.setTextSuffix(delta.suffix);
+        revision.setTextInserted(delta.inserted);
+        return snapshot ? 0 : sinceSnapshot + 1;
+    }
+
+    /**
+     * Replaces the text of {@code revision}, the newest one, which currently holds
+     * {@code headText}. A delta is folded into one against the same base, since the base text is
+     * not at hand; a snapshot stays a snapshot. Returns the revision's distance from its snapshot.
+     */
+    static int reencode(NoteRevision revision, String headText, int sinceSnapshot, String noteText) {
+        if(revision.isSnapshot()) {
+            return encode(revision, null, 0, noteText);
+        }
+        TextDelta merged = delta(revision).followedBy(TextDelta.between(headText, noteText), noteText);
+        if(merged.inserted.length() * 2 > noteText.length() || (merged.prefix == 0 && merged.suffix == 0)) {
+            return encode(revision, null, 0, noteText);
+        }
+        revision.setTextPrefix(merged.prefix);
+        revision.setTextSuffix(merged.suffix);
+        revision.setTextInserted(merged.inserted);
+        return sinceSnapshot;
+    }
+
+    private static TextDelta delta(NoteRevision revision) {
+        if(revision.isSnapshot()) {
+            return TextDelta.snapshot(revision.getTextInserted());
+        }
+        return new TextDelta(revision.getTextPrefix(), revision.getTextSuffix(), revision.getTextInserted());
+    }
+}
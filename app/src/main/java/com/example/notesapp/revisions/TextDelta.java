@@ -0,0 +1,73 @@
+package com.example.notesapp.revisions;
+
+/**
+ * Difference between two versions of a text, stored as the length of the common prefix, the
+ * length of the common suffix and whatever replaced the middle. Typing, pasting or deleting in one
+ * place between two saves costs only the edited region.
+ */
+public final class TextDelta {
+
+    public final int prefix;
+    public final int suffix;
+    public final String inserted;
+
+    public TextDelta(int prefix, int suffix, String inserted) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.inserted = inserted == null ? "" : inserted;
+    }
+
+    /**
+     * A delta that ignores the base and yields {@code text} as a whole.
+     */
+    public static TextDelta snapshot(String text) {
+        return new TextDelta(0, 0, text);
+    }
+
+    public static TextDelta between(String base, String target) {
+        base = base == null ? "" : base;
+        target = target == null ? "" : target;
+        int max = Math.min(base.length(), target.length());
+        int prefix = 0;
+        while(prefix < max && base.charAt(prefix) == target.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        max -= prefix;
+        while(suffix < max
+                && base.charAt(base.length() - 1 - suffix) == target.charAt(target.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return new TextDelta(prefix, suffix, target.substring(prefix, target.length() - suffix));
+    }
+
+    public String applyTo(String base) {
+        base = base == null ? "" : base;
+        if(prefix == 0 && suffix == 0) {
+            return inserted;
+        }
+        if(prefix + suffix > base.length()) {
+            throw new IllegalArgumentException("Delta does not fit a base of length " + base.length());
+        }
+        return new StringBuilder(prefix + inserted.length() + suffix)
+                .append(base, 0, prefix)
+                .append(inserted)
+                .append(base, base.length() - suffix, base.length())
+                .toString();
+    }
+
+    /**
+     * Combines this delta with {@code next}, which was taken against the text this one yields, into
+     * a single delta from this one's base to {@code target}, the text {@code next} yields.
+     */
+    public TextDelta followedBy(TextDelta next, String target) {
+        target = target == null ? "" : target;
+        int combinedPrefix = Math.min(prefix, next.prefix);
+        int combinedSuffix = Math.min(suffix, next.suffix);
+        return new TextDelta(
+                combinedPrefix,
+                combinedSuffix,
+                target.substring(combinedPrefix, target.length() - combinedSuffix)
+        );
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.notesapp.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Burkhard-Keller tree over a term dictionary. Every child hangs off its parent at its
+ * Levenshtein distance from the parent's term, so a lookup within distance {@code k} only
+ * descends into children whose edge lies in {@code [d - k, d + k]}.
+ * <p>
+ * Removing a term only marks its node dead; once dead nodes outnumber live ones the tree is
+ * rebuilt from the live terms. Not thread-safe.
+ */
+class BkTree {
+
+    private static final class Node {
+        final String term;
+        boolean live = true;
+        int[] edges = new int[0];
+        Node[] children = new Node[0];
+
+        Node(String term) {
+            this.term = term;
+        }
+
+        Node child(int distance) {
+            for(int i = 0; i < edges.length; i++) {
+                if(edges[i] == distance) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void addChild(int distance, Node child) {
+            edges = Arrays.copyOf(edges, edges.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            edges[edges.length - 1] = distance;
+            children[children.length - 1] = child;
+        }
+    }
+
+    private Node root;
+    private int liveCount;
+    private int deadCount;
+    private int[] previousRow = new int[16];
+    private int[] currentRow = new int[16];
+
+    void add(String term) {
+        if(root == null) {
+            root = new Node(term);
+            liveCount++;
+            return;
+        }
+        Node node = root;
+        while(true) {
+            int distance = distance(term, node.term);
+            if(distance == 0) {
+                if(!node.live) {
+                    node.live = true;
+                    liveCount++;
+                    deadCount--;
+                }
+                return;
+            }
+            Node child = node.child(distance);
+            if(child == null) {
+                node.addChild(distance, new Node(term));
+                liveCount++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    void remove(String term, Collection<String> liveTerms) {
+        Node node = root;
+        while(node != null) {
+            int distance = distance(term, node.term);
+            if(distance == 0) {
+                if(node.live) {
+                    node.live = false;
+                    liveCount--;
+                    deadCount++;
+                }
+                break;
+            }
+            node = node.child(distance);
+        }
+        if(deadCount > liveCount) {
+            rebuild(liveTerms);
+        }
+    }
+
+    /**
+     * Puts every live term within {@code maxDistance} of {@code query} into {@code matches},
+     * mapped to its distance.
+     */
+    void search(String query, int maxDistance, Map<String, Integer> matches) {
+        if(root == null) {
+            return;
+        }
+        List<Node> pending = new ArrayList<>();
+        pending.add(root);
+        while(!pending.isEmpty()) {
+            Node node = pending.remove(pending.size() - 1);
+            int distance = distance(query, node.term);
+            if(node.live && distance <= maxDistance) {
+                matches.put(node.term, distance);
+            }
+            for(int i = 0; i < node.edges.length; i++) {
+                if(Math.abs(node.edges[i] - distance) <= maxDistance) {
+                    pending.add(node.children[i]);
+                }
+            }
+        }
+    }
+
+    private void rebuild(Collection<String> liveTerms) {
+        root = null;
+        liveCount = 0;
+        deadCount = 0;
+        for(String term : liveTerms) {
+            add(term);
+        }
+    }
+
+    int distance(String a, String b) {
+        if(previousRow.length <= b.length()) {
+            previousRow = new int[b.length() + 1];
+            currentRow = new int[b.length() + 1];
+        }
+        for(int j = 0; j <= b.length(); j++) {
+            previousRow[j] = j;
+        }
+        for(int i = 1; i <= a.length(); i++) {
+            currentRow[0] = i;
+            char c = a.charAt(i - 1);
+            for(int j = 1; j <= b.length(); j++) {
+                int substitution = previousRow[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                currentRow[j] = Math.min(substitution, Math.min(previousRow[j], currentRow[j - 1]) + 1);
+            }
+            int[] row = previousRow;
+            previousRow = currentRow;
+            currentRow = row;
+        }
+        return previousRow[b.length()];
+    }
+}
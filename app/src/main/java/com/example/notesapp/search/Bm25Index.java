@@ -0,0 +1,238 @@
+package com.example.notesapp.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * BM25F relevance scoring over title, subtitle and note text. Term frequencies per field, field
+ * lengths and collection totals are updated as notes are added and removed, so a query only
+ * touches the postings of its own terms. Titles weigh most. Only the best {@code k} notes are
+ * kept, in a bounded min-heap, instead of sorting every match.
+ * <p>
+ * Not thread-safe.
+ */
+public class Bm25Index {
+
+    static final int FIELD_COUNT = 3;
+    static final double[] FIELD_WEIGHTS = {3.0, 2.0, 1.0};
+    static final double K1 = 1.2;
+    static final double B = 0.75;
+    /** How many dictionary terms the last, possibly unfinished, query term may expand to. */
+    static final int MAX_PREFIX_EXPANSIONS = 32;
+
+    private static final class TermPostings {
+        int[] ids = new int[4];
+        int[] frequencies = new int[4 * FIELD_COUNT];
+        int size;
+
+        void add(int id, int[] fieldFrequencies) {
+            int index = size > 0 && ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if(index >= 0 && index < size) {
+                System.arraycopy(fieldFrequencies, 0, frequencies, index * FIELD_COUNT, FIELD_COUNT);
+                return;
+            }
+            if(index < 0) {
+                index = -index - 1;
+            }
+            if(size == ids.length) {
+                int capacity = size + (size >> 1) + 1;
+                ids = Arrays.copyOf(ids, capacity);
+                frequencies = Arrays.copyOf(frequencies, capacity * FIELD_COUNT);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            System.arraycopy(frequencies, index * FIELD_COUNT, frequencies, (index + 1) * FIELD_COUNT,
+                    (size - index) * FIELD_COUNT);
+            ids[index] = id;
+            System.arraycopy(fieldFrequencies, 0, frequencies, index * FIELD_COUNT, FIELD_COUNT);
+            size++;
+        }
+
+        void remove(int id) {
+            int index = Arrays.binarySearch(ids, 0, size, id);
+            if(index < 0) {
+                return;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            System.arraycopy(frequencies, (index + 1) * FIELD_COUNT, frequencies, index * FIELD_COUNT,
+                    (size - index - 1) * FIELD_COUNT);
+            size--;
+        }
+    }
+
+    private static final class Hit {
+        final int id;
+        final double score;
+
+        Hit(int id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    private static final Comparator<Hit> WORST_FIRST = new Comparator<Hit>() {
+        @Override
+        public int compare(Hit a, Hit b) {
+            int byScore = Double.compare(a.score, b.score);
+            return byScore != 0 ? byScore : Integer.compare(a.id, b.id);
+        }
+    };
+
+    private final TreeMap<String, TermPostings> postings = new TreeMap<>();
+    private final Map<Integer, int[]> fieldLengths = new HashMap<>();
+    private final long[] totalLengths = new long[FIELD_COUNT];
+
+    /**
+     * Indexes {@code fields}, which must be the normalized title, subtitle and note text.
+     */
+    public void add(int id, String... fields) {
+        int[] lengths = new int[FIELD_COUNT];
+        for(Map.Entry<String, int[]> term : termFrequencies(fields, lengths).entrySet()) {
+            TermPostings list = postings.get(term.getKey());
+            if(list == null) {
+                list = new TermPostings();
+                postings.put(term.getKey(), list);
+            }
+            list.add(id, term.getValue());
+        }
+        fieldLengths.put(id, lengths);
+        for(int f = 0; f < FIELD_COUNT; f++) {
+            totalLengths[f] += lengths[f];
+        }
+    }
+
+    /**
+     * Removes {@code id}; {@code fields} must be the text it was added with.
+     */
+    public void remove(int id, String... fields) {
+        int[] lengths = fieldLengths.remove(id);
+        if(lengths == null) {
+            return;
+        }
+        for(int f = 0; f < FIELD_COUNT; f++) {
+            totalLengths[f] -= lengths[f];
+        }
+        for(String term : termFrequencies(fields, new int[FIELD_COUNT]).keySet()) {
+            TermPostings list = postings.get(term);
+            if(list != null) {
+                list.remove(id);
+                if(list.size == 0) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of the {@code k} highest scoring notes for {@code query}, best first, and
+     * adds the dictionary terms that were scored to {@code matchedTerms}. {@code query} must
+     * already be normalized.
+     */
+    public int[] topK(String query, int k, Set<String> matchedTerms) {
+        List<String> queryTerms = new ArrayList<>(FuzzyIndex.terms(query));
+        int documentCount = fieldLengths.size();
+        if(queryTerms.isEmpty() || documentCount == 0 || k <= 0) {
+            return new int[0];
+        }
+        double[] averageLengths = new double[FIELD_COUNT];
+        for(int f = 0; f < FIELD_COUNT; f++) {
+            averageLengths[f] = Math.max(1.0, (double) totalLengths[f] / documentCount);
+        }
+
+        Map<Integer, double[]> scores = new HashMap<>();
+        for(int i = 0; i < queryTerms.size(); i++) {
+            String queryTerm = queryTerms.get(i);
+            if(i < queryTerms.size() - 1) {
+                if(postings.containsKey(queryTerm)) {
+                    matchedTerms.add(queryTerm);
+                    accumulate(postings.get(queryTerm), documentCount, averageLengths, scores);
+                }
+                continue;
+            }
+            int expansions = 0;
+            for(Map.Entry<String, TermPostings> term
+                    : postings.subMap(queryTerm, queryTerm + Character.MAX_VALUE).entrySet()) {
+                matchedTerms.add(term.getKey());
+                accumulate(term.getValue(), documentCount, averageLengths, scores);
+                if(++expansions == MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+            }
+        }
+
+        PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(k, scores.size()) + 1, WORST_FIRST);
+        for(Map.Entry<Integer, double[]> score : scores.entrySet()) {
+            Hit hit = new Hit(score.getKey(), score.getValue()[0]);
+            if(best.size() < k) {
+                best.add(hit);
+            }else if(WORST_FIRST.compare(hit, best.peek()) > 0) {
+                best.poll();
+                best.add(hit);
+            }
+        }
+        int[] ids = new int[best.size()];
+        for(int i = ids.length - 1; i >= 0; i--) {
+            ids[i] = best.poll().id;
+        }
+        return ids;
+    }
+
+    private void accumulate(TermPostings list, int documentCount, double[] averageLengths,
+                            Map<Integer, double[]> scores) {
+        if(list == null) {
+            return;
+        }
+        double idf = Math.log(1.0 + (documentCount - list.size + 0.5) / (list.size + 0.5));
+        for(int i = 0; i < list.size; i++) {
+            int[] lengths = fieldLengths.get(list.ids[i]);
+            double frequency = 0;
+            for(int f = 0; f < FIELD_COUNT; f++) {
+                int count = list.frequencies[i * FIELD_COUNT + f];
+                if(count > 0) {
+                    frequency += FIELD_WEIGHTS[f] * count / (1 - B + B * lengths[f] / averageLengths[f]);
+                }
+            }
+            double[] score = scores.get(list.ids[i]);
+            if(score == null) {
+                score = new double[1];
+                scores.put(list.ids[i], score);
+            }
+            score[0] += idf * frequency * (K1 + 1) / (K1 + frequency);
+        }
+    }
+
+    /**
+     * Counts each letter-and-digit term per field, and stores every field's term count in
+     * {@code lengths}.
+     */
+    static Map<String, int[]> termFrequencies(String[] fields, int[] lengths) {
+        Map<String, int[]> frequencies = new HashMap<>();
+        for(int f = 0; f < FIELD_COUNT; f++) {
+            String field = fields[f];
+            int start = -1;
+            for(int i = 0; i <= field.length(); i++) {
+                boolean letter = i < field.length() && Character.isLetterOrDigit(field.charAt(i));
+                if(letter && start < 0) {
+                    start = i;
+                }else if(!letter && start >= 0) {
+                    String term = field.substring(start, i);
+                    int[] counts = frequencies.get(term);
+                    if(counts == null) {
+                        counts = new int[FIELD_COUNT];
+                        frequencies.put(term, counts);
+                    }
+                    counts[f]++;
+                    lengths[f]++;
+                    start = -1;
+                }
+            }
+        }
+        return frequencies;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.notesapp.search;
+
+import java.util.Locale;
+
+/**
+ * Turns the text typed in the search box into an FTS4 MATCH expression.
+ * Every token becomes a prefix term, so "meet tom" matches "meeting with Tommy".
+ */
+public final class FtsQuery {
+
+    private FtsQuery() {
+    }
+
+    public static String build(String keyword) {
+        StringBuilder match = new StringBuilder();
+        StringBuilder token = new StringBuilder();
+        String lower = keyword.toLowerCase(Locale.ROOT);
+        for(int i = 0; i <= lower.length(); i++) {
+            char c = i < lower.length() ? lower.charAt(i) : ' ';
+            if(Character.isLetterOrDigit(c)) {
+                token.append(c);
+            }else if(token.length() > 0) {
+                if(match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append(token).append('*');
+                token.setLength(0);
+            }
+        }
+        return match.toString();
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.notesapp.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Typo-tolerant term lookup over note titles and subtitles. Terms are the letter and digit runs
+ * of the normalized text; each one maps to the ids of the notes using it, and a {@link BkTree}
+ * over the dictionary finds terms within a small edit distance of a query term. The last query
+ * term also matches every term it is a prefix of, since it is usually still being typed.
+ * <p>
+ * Not thread-safe.
+ */
+public class FuzzyIndex {
+
+    private final TreeMap<String, IntPostings> postings = new TreeMap<>();
+    private final BkTree tree = new BkTree();
+
+    public void add(int id, String... fields) {
+        for(String term : terms(fields)) {
+            IntPostings list = postings.get(term);
+            if(list == null) {
+                list = new IntPostings();
+                postings.put(term, list);
+                tree.add(term);
+            }
+            list.add(id);
+        }
+    }
+
+    /**
+     * Removes {@code id}; {@code fields} must be the text it was added with.
+     */
+    public void remove(int id, String... fields) {
+        for(String term : terms(fields)) {
+            IntPostings list = postings.get(term);
+            if(list != null) {
+                list.remove(id);
+                if(list.size == 0) {
+                    postings.remove(term);
+                    tree.remove(term, postings.keySet());
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps every note matching all terms of {@code query} to the sum of its per-term edit
+     * distances, and adds the dictionary terms that matched to {@code matchedTerms}.
+     * {@code query} must already be normalized.
+     */
+    public Map<Integer, Integer> match(String query, Set<String> matchedTerms) {
+        List<String> queryTerms = new ArrayList<>(terms(query));
+        Map<Integer, Integer> distances = null;
+        for(int i = 0; i < queryTerms.size(); i++) {
+            String queryTerm = queryTerms.get(i);
+            Map<String, Integer> terms = new HashMap<>();
+            tree.search(queryTerm, maxDistance(queryTerm), terms);
+            if(i == queryTerms.size() - 1) {
+                SortedMap<String, IntPostings> completions =
+                        postings.subMap(queryTerm, queryTerm + Character.MAX_VALUE);
+                for(String term : completions.keySet()) {
+                    terms.put(term, 0);
+                }
+            }
+            matchedTerms.addAll(terms.keySet());
+            Map<Integer, Integer> termDistances = new HashMap<>();
+            for(Map.Entry<String, Integer> term : terms.entrySet()) {
+                IntPostings list = postings.get(term.getKey());
+                for(int j = 0; j < list.size; j++) {
+                    Integer best = termDistances.get(list.ids[j]);
+                    if(best == null || best > term.getValue()) {
+                        termDistances.put(list.ids[j], term.getValue());
+                    }
+                }
+            }
+            if(distances == null) {
+                distances = termDistances;
+                continue;
+            }
+            Iterator<Map.Entry<Integer, Integer>> matched = distances.entrySet().iterator();
+            while(matched.hasNext()) {
+                Map.Entry<Integer, Integer> note = matched.next();
+                Integer distance = termDistances.get(note.getKey());
+                if(distance == null) {
+                    matched.remove();
+                }else {
+                    note.setValue(note.getValue() + distance);
+                }
+            }
+        }
+        return distances != null ? distances : new HashMap<Integer, Integer>();
+    }
+
+    /**
+     * Edits allowed for a query term: none for very short terms, where one edit matches almost
+     * anything, and at most two.
+     */
+    static int maxDistance(String term) {
+        if(term.length() <= 2) {
+            return 0;
+        }
+        return term.length() <= 5 ? 1 : 2;
+    }
+
+    static Set<String> terms(String... fields) {
+        Set<String> terms = new LinkedHashSet<>();
+        for(String field : fields) {
+            int start = -1;
+            for(int i = 0; i <= field.length(); i++) {
+                boolean letter = i < field.length() && Character.isLetterOrDigit(field.charAt(i));
+                if(letter && start < 0) {
+                    start = i;
+                }else if(!letter && start >= 0) {
+                    terms.add(field.substring(start, i));
+                    start = -1;
+                }
+            }
+        }
+        return terms;
+    }
+}
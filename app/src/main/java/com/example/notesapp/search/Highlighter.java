@@ -0,0 +1,112 @@
+package com.example.notesapp.search;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Finds match ranges in normalized text, either of a literal substring or of whole terms from a
+ * set. Normalization keeps offsets, so the ranges apply to the original text as well.
+ */
+final class Highlighter {
+
+    static final int MAX_MATCHES = 16;
+    static final int SNIPPET_CONTEXT = 40;
+    static final int SNIPPET_LENGTH = 160;
+    private static final String ELLIPSIS = "\u2026";
+
+    private final String query;
+    private final Set<String> terms;
+
+    private Highlighter(String query, Set<String> terms) {
+        this.query = query;
+        this.terms = terms;
+    }
+
+    static Highlighter forSubstring(String query) {
+        return new Highlighter(query, null);
+    }
+
+    static Highlighter forTerms(Set<String> terms) {
+        return new Highlighter(null, terms);
+    }
+
+    /**
+     * Start/end pairs of matches lying entirely within {@code [from, to)}.
+     */
+    int[] matches(String text, int from, int to) {
+        int[] ranges = new int[8];
+        int count = 0;
+        if(query != null) {
+            int index = text.indexOf(query, from);
+            while(index >= 0 && index + query.length() <= to && count < MAX_MATCHES * 2) {
+                if(count == ranges.length) {
+                    ranges = Arrays.copyOf(ranges, count * 2);
+                }
+                ranges[count++] = index;
+                ranges[count++] = index + query.length();
+                index = text.indexOf(query, index + query.length());
+            }
+            return Arrays.copyOf(ranges, count);
+        }
+        int start = -1;
+        for(int i = from; i <= to && count < MAX_MATCHES * 2; i++) {
+            boolean letter = i < to && Character.isLetterOrDigit(text.charAt(i));
+            if(letter && start < 0) {
+                start = i;
+            }else if(!letter && start >= 0) {
+                if(terms.contains(text.substring(start, i))) {
+                    if(count == ranges.length) {
+                        ranges = Arrays.copyOf(ranges, count * 2);
+                    }
+                    ranges[count++] = start;
+                    ranges[count++] = i;
+                }
+                start = -1;
+            }
+        }
+        return Arrays.copyOf(ranges, count);
+    }
+
+    /**
+     * Cuts a window of {@code text} around the first match and stores it, with its match ranges,
+     * on {@code hit}. Only the window is lowercased. Leaves the hit without a snippet if the text
+     * has no match.
+     */
+    void snippet(SearchHit hit, String text) {
+        int first = query != null ? NoteSearchEngine.indexOfNormalized(text, query, 0) : firstTermMatch(text);
+        if(first < 0) {
+            return;
+        }
+        int start = Math.max(0, first - SNIPPET_CONTEXT);
+        if(start > 0) {
+            int space = text.indexOf(' ', start);
+            if(space >= 0 && space < first) {
+                start = space + 1;
+            }
+        }
+        int end = Math.min(text.length(), start + SNIPPET_LENGTH);
+        String prefix = start > 0 ? ELLIPSIS : "";
+        String window = text.substring(start, end);
+        int[] ranges = matches(NoteSearchEngine.normalize(window), 0, window.length());
+        for(int i = 0; i < ranges.length; i++) {
+            ranges[i] += prefix.length();
+        }
+        hit.setSnippet(prefix + window.replace('\n', ' ') + (end < text.length() ? ELLIPSIS : ""), ranges);
+    }
+
+    private int firstTermMatch(String text) {
+        int start = -1;
+        for(int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if(letter && start < 0) {
+                start = i;
+            }else if(!letter && start >= 0) {
+                if(terms.contains(NoteSearchEngine.normalize(text.substring(start, i)))) {
+                    return start;
+                }
+                start = -1;
+            }
+        }
+        return -1;
+    }
+}
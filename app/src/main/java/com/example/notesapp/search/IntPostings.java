@@ -0,0 +1,48 @@
+package com.example.notesapp.search;
+
+import java.util.Arrays;
+
+/**
+ * Growable, sorted list of note ids backed by an {@code int[]}.
+ */
+final class IntPostings {
+
+    int[] ids = new int[4];
+    int size;
+
+    void add(int id) {
+        if(size == 0 || ids[size - 1] < id) {
+            ensureCapacity();
+            ids[size++] = id;
+            return;
+        }
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if(index >= 0) {
+            return;
+        }
+        index = -index - 1;
+        ensureCapacity();
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        ids[index] = id;
+        size++;
+    }
+
+    void remove(int id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if(index < 0) {
+            return;
+        }
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        size--;
+    }
+
+    boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    private void ensureCapacity() {
+        if(size == ids.length) {
+            ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.notesapp.search;
+
+import com.example.notesapp.entities.Note;
+import com.example.notesapp.entities.NoteSummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory substring search over title, subtitle and note text, with the same matching rules as
+ * a case-insensitive {@code contains}. Each note's text is lowercased when it is added and fed to
+ * a {@link TrigramIndex}, which narrows queries of three or more characters down to a few
+ * candidates before they are checked. Only the original text is kept; candidates are compared
+ * char by char and snippets lowercase just the window they show. Titles and subtitles also go into a {@link FuzzyIndex} for
+ * typo-tolerant lookups, and all three fields into a {@link Bm25Index} for ranked search. Results
+ * for recent exact queries are kept, so a query that extends an earlier one only filters the
+ * earlier result set, and backspacing is served from the cache.
+ * <p>
+ * Not thread-safe; {@link SearchScheduler} confines it to the search worker.
+ */
+public class NoteSearchEngine {
+
+    private static final int MAX_CACHED_QUERIES = 32;
+
+    private static final class Entry {
+        final NoteSummary summary;
+        final int version;
+        final long modifiedAt;
+        final String title;
+        final String subtitle;
+        final String noteText;
+
+        Entry(Note note, NoteSummary summary) {
+            this.summary = summary;
+            version = note.getVersion();
+            modifiedAt = note.getModifiedAt();
+            title = normalize(note.getTitle());
+            subtitle = normalize(note.getSubtitle());
+            noteText = note.getNoteText() != null ? note.getNoteText() : "";
+        }
+
+        boolean contains(String query) {
+            return title.contains(query) || subtitle.contains(query) || indexOfNormalized(noteText, query, 0) >= 0;
+        }
+    }
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final TrigramIndex trigramIndex = new TrigramIndex();
+    private final FuzzyIndex fuzzyIndex = new FuzzyIndex();
+    private final Bm25Index bm25Index = new Bm25Index();
+    private final LinkedHashMap<String, int[]> resultCache =
+            new LinkedHashMap<String, int[]>(MAX_CACHED_QUERIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+                    return size() > MAX_CACHED_QUERIES;
+                }
+            };
+
+    /**
+     * Lowercases char by char, so offsets in the normalized text line up with the original.
+     */
+    public static String normalize(String text) {
+        if(text == null) {
+            return "";
+        }
+        char[] chars = text.toCharArray();
+        for(int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Like {@code normalize(text).indexOf(query, from)} for an already normalized {@code query},
+     * without copying {@code text}.
+     */
+    static int indexOfNormalized(String text, String query, int from) {
+        int last = text.length() - query.length();
+        if(query.isEmpty()) {
+            return from <= text.length() ? from : -1;
+        }
+        char first = query.charAt(0);
+        for(int i = Math.max(0, from); i <= last; i++) {
+            if(Character.toLowerCase(text.charAt(i)) != first) {
+                continue;
+            }
+            int j = 1;
+            while(j < query.length() && Character.toLowerCase(text.charAt(i + j)) == query.charAt(j)) {
+                j++;
+            }
+            if(j == query.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void put(Note note) {
+        Entry entry = new Entry(note, toSummary(note));
+        Entry previous = entries.put(note.getId(), entry);
+        if(previous != null) {
+            unindex(note.getId(), previous);
+        }
+        String noteText = normalize(entry.noteText);
+        trigramIndex.add(note.getId(), entry.title, entry.subtitle, noteText);
+        fuzzyIndex.add(note.getId(), entry.title, entry.subtitle);
+        bm25Index.add(note.getId(), entry.title, entry.subtitle, noteText);
+        resultCache.clear();
+    }
+
+    public void remove(int id) {
+        Entry entry = entries.remove(id);
+        if(entry != null) {
+            unindex(id, entry);
+            resultCache.clear();
+        }
+    }
+
+    private void unindex(int id, Entry entry) {
+        String noteText = normalize(entry.noteText);
+        trigramIndex.remove(id, entry.title, entry.subtitle, noteText);
+        fuzzyIndex.remove(id, entry.title, entry.subtitle);
+        bm25Index.remove(id, entry.title, entry.subtitle, noteText);
+    }
+
+    public boolean isCurrent(int id, int version, long modifiedAt) {
+        Entry entry = entries.get(id);
+        return entry != null && entry.version == version && entry.modifiedAt == modifiedAt;
+    }
+
+    public int[] getIds() {
+        int[] ids = new int[entries.size()];
+        int i = 0;
+        for(Integer id : entries.keySet()) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns up to {@code limit} matching notes as {@link SearchHit}s, newest first.
+     */
+    public List<NoteSummary> search(String keyword, int limit) {
+        String query = normalize(keyword);
+        if(query.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int[] matches = resultCache.get(query);
+        if(matches == null) {
+            int[] candidates = cachedPrefixResult(query);
+            if(candidates != null) {
+                matches = filter(candidates, query);
+            }else if(query.length() >= TrigramIndex.GRAM_LENGTH) {
+                int[] ascending = trigramIndex.candidates(query);
+                matches = filter(ascending, query);
+                reverse(matches);
+            }else {
+                matches = scan(query);
+            }
+            resultCache.put(query, matches);
+        }
+        Highlighter highlighter = Highlighter.forSubstring(query);
+        List<NoteSummary> results = new ArrayList<>(Math.min(limit, matches.length));
+        for(int i = 0; i < matches.length && results.size() < limit; i++) {
+            results.add(hit(entries.get(matches[i]), highlighter));
+        }
+        return results;
+    }
+
+    /**
+     * Returns up to {@code limit} notes whose title or subtitle has, for every term of
+     * {@code keyword}, a term within a few edits of it. Closest matches come first, then the most
+     * recently modified.
+     */
+    public List<NoteSummary> searchFuzzy(String keyword, int limit) {
+        Set<String> matchedTerms = new HashSet<>();
+        final Map<Integer, Integer> distances = fuzzyIndex.match(normalize(keyword), matchedTerms);
+        List<Entry> matches = new ArrayList<>(distances.size());
+        for(Integer id : distances.keySet()) {
+            matches.add(entries.get(id));
+        }
+        Collections.sort(matches, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                int byDistance = Integer.compare(distances.get(a.summary.getId()), distances.get(b.summary.getId()));
+                if(byDistance != 0) {
+                    return byDistance;
+                }
+                int byRecency = Long.compare(b.modifiedAt, a.modifiedAt);
+                return byRecency != 0 ? byRecency : Integer.compare(b.summary.getId(), a.summary.getId());
+            }
+        });
+        Highlighter highlighter = Highlighter.forTerms(matchedTerms);
+        List<NoteSummary> results = new ArrayList<>(Math.min(limit, matches.size()));
+        for(int i = 0; i < matches.size() && i < limit; i++) {
+            results.add(hit(matches.get(i), highlighter));
+        }
+        return results;
+    }
+
+    /**
+     * Returns up to {@code limit} notes sharing a term with {@code keyword}, most relevant first.
+     */
+    public List<NoteSummary> searchRanked(String keyword, int limit) {
+        Set<String> matchedTerms = new HashSet<>();
+        int[] ids = bm25Index.topK(normalize(keyword), limit, matchedTerms);
+        Highlighter highlighter = Highlighter.forTerms(matchedTerms);
+        List<NoteSummary> results = new ArrayList<>(ids.length);
+        for(int id : ids) {
+            results.add(hit(entries.get(id), highlighter));
+        }
+        return results;
+    }
+
+    private static SearchHit hit(Entry entry, Highlighter highlighter) {
+        SearchHit hit = SearchHit.of(entry.summary);
+        hit.setTitleMatches(highlighter.matches(entry.title, 0, entry.title.length()));
+        hit.setSubtitleMatches(highlighter.matches(entry.subtitle, 0, entry.subtitle.length()));
+        highlighter.snippet(hit, entry.noteText);
+        return hit;
+    }
+
+    private int[] cachedPrefixResult(String query) {
+        for(int end = query.length() - 1; end > 0; end--) {
+            int[] cached = resultCache.get(query.substring(0, end));
+            if(cached != null) {
+                return cached;
+            }
+        }
+        return null;
+    }
+
+    private int[] filter(int[] candidates, String query) {
+        int[] matches = new int[candidates.length];
+        int count = 0;
+        for(int id : candidates) {
+            if(entries.get(id).contains(query)) {
+                matches[count++] = id;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    private int[] scan(String query) {
+        int[] matches = new int[entries.size()];
+        int count = 0;
+        for(Map.Entry<Integer, Entry> entry : entries.entrySet()) {
+            if(entry.getValue().contains(query)) {
+                matches[count++] = entry.getKey();
+            }
+        }
+        return sortNewestFirst(matches, count);
+    }
+
+    private static int[] sortNewestFirst(int[] ids, int count) {
+        int[] sorted = Arrays.copyOf(ids, count);
+        Arrays.sort(sorted);
+        reverse(sorted);
+        return sorted;
+    }
+
+    private static void reverse(int[] ids) {
+        for(int i = 0, j = ids.length - 1; i < j; i++, j--) {
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+    }
+
+    private static NoteSummary toSummary(Note note) {
+        NoteSummary summary = new NoteSummary();
+        summary.setId(note.getId());
+        summary.setTitle(note.getTitle());
+        summary.setDateTime(note.getDateTime());
+        summary.setSubtitle(note.getSubtitle());
+        String noteText = note.getNoteText();
+        if(noteText != null && noteText.length() > NoteSummary.PREVIEW_LENGTH) {
+            noteText = noteText.substring(0, NoteSummary.PREVIEW_LENGTH);
+        }
+        summary.setNotePreview(noteText);
+        summary.setImagePath(note.getImagePath());
+        summary.setColor(note.getColor());
+        summary.setCreatedAt(note.getCreatedAt());
+        summary.setModifiedAt(note.getModifiedAt());
+        summary.setVersion(note.getVersion());
+        summary.setImageWidth(note.getImageWidth());
+        summary.setImageHeight(note.getImageHeight());
+        summary.setImageColor(note.getImageColor());
+        return summary;
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.notesapp.search;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.example.notesapp.dao.NoteDao;
+import com.example.notesapp.database.NotesDatabase;
+import com.example.notesapp.entities.Note;
+import com.example.notesapp.entities.NoteSummary;
+import com.example.notesapp.repository.NotesRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * Search backend for the notes list. Answers from {@link NoteSearchEngine} once it has been
+ * loaded, and from the FTS table until then. {@link #sync()} brings the engine in line with the
+ * notes table by comparing row versions, loading changed notes one chunk per task so queries
+ * typed meanwhile are not stuck behind a large initial load. Only the first sync and imports
+ * compare every row; after that a sync reads the notes modified since the last one plus the ids
+ * the repository reports as written.
+ * <p>
+ * There is one instance per process, so the engine survives activity recreation and a rotation
+ * only re-checks versions instead of reloading every note. Everything here runs on its single
+ * {@link #getWorker() worker}, which each screen's {@link SearchScheduler} shares.
+ */
+public class NotesSearcher implements SearchScheduler.Searcher<NoteSummary>, NotesRepository.ChangeListener {
+
+    public static final int MODE_EXACT = 0;
+    public static final int MODE_FUZZY = 1;
+    public static final int MODE_RANKED = 2;
+    public static final int MAX_RESULTS = 200;
+
+    private static final int SCAN_NONE = 0;
+    private static final int SCAN_CHANGED = 1;
+    private static final int SCAN_ALL = 2;
+
+    private static NotesSearcher notesSearcher;
+
+    private final NoteDao noteDao;
+    private final NoteSearchEngine engine = new NoteSearchEngine();
+    private final ScheduledExecutorService worker;
+    private volatile int mode = MODE_EXACT;
+    private boolean ready;
+    private boolean syncing;
+    private int requestedScan = SCAN_NONE;
+    /** Notes pushed by writers since the last sync started. */
+    private final Set<Integer> changedIds = new HashSet<>();
+    /** Newest modified time any sync has seen; incremental syncs look from here on. */
+    private long watermark;
+
+    public static synchronized NotesSearcher getInstance(Context context) {
+        if(notesSearcher == null) {
+            Context appContext = context.getApplicationContext();
+            notesSearcher = new NotesSearcher(NotesDatabase.getDatabase(appContext));
+            NotesRepository.getInstance(appContext).addChangeListener(notesSearcher);
+        }
+        return notesSearcher;
+    }
+
+    private NotesSearcher(NotesDatabase notesDatabase) {
+        noteDao = notesDatabase.getNoteDao();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        worker = executor;
+    }
+
+    /**
+     * The one thread the engine is confined to. Lives as long as the process.
+     */
+    public ScheduledExecutorService getWorker() {
+        return worker;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * Takes effect from the next query; fuzzy and ranked search need the in-memory engine, so
+     * they behave like exact search until the engine has loaded.
+     */
+    public void setMode(int mode) {
+        this.mode = mode;
+    }
+
+    @Override
+    public List<NoteSummary> search(String query) {
+        if(ready) {
+            switch(mode) {
+                case MODE_FUZZY:
+                    return engine.searchFuzzy(query, MAX_RESULTS);
+                case MODE_RANKED:
+                    return engine.searchRanked(query, MAX_RESULTS);
+                default:
+                    return engine.search(query, MAX_RESULTS);
+            }
+        }
+        String match = FtsQuery.build(query);
+        if(match.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return noteDao.searchNoteSummaries(match, MAX_RESULTS);
+    }
+
+    /**
+     * Queues a full sync, which compares the version of every note. Needed on a cold start and
+     * after an import, whose notes keep their original modified times. Safe to call from any
+     * thread.
+     */
+    public void requestSync() {
+        requestScan(SCAN_ALL);
+    }
+
+    /**
+     * Queues an incremental sync that only looks at notes modified since the last one, through
+     * the {@code modified_at} index. Cheap enough to run on every invalidation of the table.
+     */
+    public void requestUpdate() {
+        requestScan(SCAN_CHANGED);
+    }
+
+    /**
+     * Reloads the given notes, or drops the ones that no longer exist. Writers call this with
+     * the ids they touched, which also covers deletes and writes that keep the modified time.
+     */
+    @Override
+    public void onNotesChanged(Collection<Integer> noteIds) {
+        final List<Integer> ids = new ArrayList<>(noteIds);
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                changedIds.addAll(ids);
+                if(!syncing) {
+                    sync();
+                }
+            }
+        });
+    }
+
+    private void requestScan(final int scan) {
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                requestedScan = Math.max(requestedScan, scan);
+                if(!syncing) {
+                    sync();
+                }
+            }
+        });
+    }
+
+    private void sync() {
+        syncing = true;
+        int scan = ready ? requestedScan : SCAN_ALL;
+        requestedScan = SCAN_NONE;
+        Set<Integer> staleIds = new LinkedHashSet<>(changedIds);
+        changedIds.clear();
+        boolean loading = false;
+        try {
+            long newest = watermark;
+            if(scan == SCAN_ALL) {
+                newest = scanAll(staleIds);
+            }else if(scan == SCAN_CHANGED) {
+                try (Cursor cursor = noteDao.getNoteVersionsSinceCursor(watermark)) {
+                    newest = collectStale(cursor, staleIds, null);
+                }
+            }
+            loading = true;
+            loadChunk(new ArrayList<>(staleIds), 0, newest);
+        }finally {
+            if(!loading) {
+                finishSync();
+            }
+        }
+    }
+
+    private long scanAll(Set<Integer> staleIds) {
+        Set<Integer> liveIds = new HashSet<>();
+        long newest;
+        try (Cursor cursor = noteDao.getNoteVersionsCursor()) {
+            newest = collectStale(cursor, staleIds, liveIds);
+        }
+        for(int id : engine.getIds()) {
+            if(!liveIds.contains(id)) {
+                engine.remove(id);
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Adds the ids whose version the engine does not have to {@code staleIds} and returns the
+     * newest modified time seen, which becomes the watermark once those notes are loaded.
+     */
+    private long collectStale(Cursor cursor, Set<Integer> staleIds, Set<Integer> liveIds) {
+        long newest = watermark;
+        while(cursor.moveToNext()) {
+            int id = cursor.getInt(0);
+            long modifiedAt = cursor.getLong(2);
+            if(liveIds != null) {
+                liveIds.add(id);
+            }
+            if(!engine.isCurrent(id, cursor.getInt(1), modifiedAt)) {
+                staleIds.add(id);
+            }
+            newest = Math.max(newest, modifiedAt);
+        }
+        return newest;
+    }
+
+    /**
+     * Loads one chunk and queues the next. Whatever happens, the last step ends the sync, so a
+     * failed load never leaves later requests waiting on a sync that is not running.
+     */
+    private void loadChunk(final List<Integer> ids, final int start, final long newest) {
+        boolean queued = false;
+        try {
+            if(start >= ids.size()) {
+                watermark = newest;
+                ready = true;
+                return;
+            }
+            int end = Math.min(ids.size(), start + NoteDao.BATCH_CHUNK_SIZE);
+            List<Integer> chunk = ids.subList(start, end);
+            Set<Integer> deletedIds = new HashSet<>(chunk);
+            for(Note note : noteDao.getNotesByIds(chunk)) {
+                deletedIds.remove(note.getId());
+                engine.put(note);
+            }
+            for(int id : deletedIds) {
+                engine.remove(id);
+            }
+            final int next = end;
+            worker.execute(new Runnable() {
+                @Override
+                public void run() {
+                    loadChunk(ids, next, newest);
+                }
+            });
+            queued = true;
+        }finally {
+            if(!queued) {
+                finishSync();
+            }
+        }
+    }
+
+    private void finishSync() {
+        syncing = false;
+        if(requestedScan != SCAN_NONE || !changedIds.isEmpty()) {
+            requestScan(SCAN_NONE);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.notesapp.search;
+
+import android.text.TextUtils;
+
+import com.example.notesapp.entities.NoteSummary;
+
+import java.util.Arrays;
+
+/**
+ * A search result together with where the query matched: start/end pairs into the title and
+ * subtitle, and a short window of note text around the first match with its own pairs. All of it
+ * is worked out on the search worker so binding only has to apply spans.
+ */
+public class SearchHit extends NoteSummary {
+
+    private static final int[] NO_MATCHES = new int[0];
+
+    private int[] titleMatches = NO_MATCHES;
+    private int[] subtitleMatches = NO_MATCHES;
+    private String snippet;
+    private int[] snippetMatches = NO_MATCHES;
+
+    static SearchHit of(NoteSummary summary) {
+        SearchHit hit = new SearchHit();
+        hit.setId(summary.getId());
+        hit.setTitle(summary.getTitle());
+        hit.setDateTime(summary.getDateTime());
+        hit.setSubtitle(summary.getSubtitle());
+        hit.setNotePreview(summary.getNotePreview());
+        hit.setImagePath(summary.getImagePath());
+        hit.setColor(summary.getColor());
+        hit.setCreatedAt(summary.getCreatedAt());
+        hit.setModifiedAt(summary.getModifiedAt());
+        hit.setVersion(summary.getVersion());
+        hit.setImageWidth(summary.getImageWidth());
+        hit.setImageHeight(summary.getImageHeight());
+        hit.setImageColor(summary.getImageColor());
+        return hit;
+    }
+
+    /**
+     * A copy of this hit showing {@code summary}, the same note as saved later. Highlights are
+     * kept for the fields that did not change and dropped for the rest, since their ranges may no
+     * longer fit; the next search works them out again. The snippet comes from the full note
+     * text, which the preview only shows the start of, so it is kept only while the version is.
+     */
+    public SearchHit withSummary(NoteSummary summary) {
+        SearchHit hit = of(summary);
+        if(TextUtils.equals(getTitle(), summary.getTitle())) {
+            hit.titleMatches = titleMatches;
+        }
+        if(TextUtils.equals(getSubtitle(), summary.getSubtitle())) {
+            hit.subtitleMatches = subtitleMatches;
+        }
+        if(getVersion() == summary.getVersion()) {
+            hit.snippet = snippet;
+            hit.snippetMatches = snippetMatches;
+        }
+        return hit;
+    }
+
+    public int[] getTitleMatches() {
+        return titleMatches;
+    }
+
+    void setTitleMatches(int[] titleMatches) {
+        this.titleMatches = titleMatches;
+    }
+
+    public int[] getSubtitleMatches() {
+        return subtitleMatches;
+    }
+
+    void setSubtitleMatches(int[] subtitleMatches) {
+        this.subtitleMatches = subtitleMatches;
+    }
+
+    /**
+     * Note text around the first match, or {@code null} when only the title or subtitle matched.
+     */
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public int[] getSnippetMatches() {
+        return snippetMatches;
+    }
+
+    void setSnippet(String snippet, int[] snippetMatches) {
+        this.snippet = snippet;
+        this.snippetMatches = snippetMatches;
+    }
+
+    /**
+     * Whether two list items would be highlighted the same way; plain summaries count as having
+     * no highlights.
+     */
+    public static boolean sameHighlights(NoteSummary a, NoteSummary b) {
+        if(!(a instanceof SearchHit) || !(b instanceof SearchHit)) {
+            return !(a instanceof SearchHit) && !(b instanceof SearchHit);
+        }
+        SearchHit first = (SearchHit) a;
+        SearchHit second = (SearchHit) b;
+        return Arrays.equals(first.titleMatches, second.titleMatches)
+                && Arrays.equals(first.subtitleMatches, second.subtitleMatches)
+                && Arrays.equals(first.snippetMatches, second.snippetMatches)
+                && (first.snippet == null ? second.snippet == null : first.snippet.equals(second.snippet));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.notesapp.search;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs search-as-you-type queries on a single worker thread, which the searcher may share with
+ * other schedulers and outlive this one. Each keystroke restarts the
+ * debounce window, and every query is tagged with a generation so results for text the user has
+ * already typed past are dropped instead of published. Results reach the main thread as
+ * unmodifiable snapshots.
+ */
+public class SearchScheduler<T> {
+
+    public static final long DEBOUNCE_MILLIS = 250;
+
+    public interface Searcher<T> {
+        List<T> search(String query);
+    }
+
+    public interface Listener<T> {
+        void onResults(String query, List<T> results);
+    }
+
+    private final Searcher<T> searcher;
+    private final Listener<T> listener;
+    private final ScheduledExecutorService worker;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger generation = new AtomicInteger();
+    private ScheduledFuture<?> pending;
+
+    public SearchScheduler(ScheduledExecutorService worker, Searcher<T> searcher, Listener<T> listener) {
+        this.worker = worker;
+        this.searcher = searcher;
+        this.listener = listener;
+    }
+
+    public void schedule(final String query) {
+        final int queryGeneration = cancel();
+        pending = worker.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if(queryGeneration != generation.get()) {
+                    return;
+                }
+                final List<T> results = Collections.unmodifiableList(searcher.search(query));
+                if(queryGeneration != generation.get()) {
+                    return;
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(queryGeneration == generation.get()) {
+                            listener.onResults(query, results);
+                        }
+                    }
+                });
+            }
+        }, DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public int cancel() {
+        if(pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        return generation.incrementAndGet();
+    }
+
+    /**
+     * Drops the pending query and any results still on their way. The worker is left running for
+     * whoever else shares it.
+     */
+    public void shutdown() {
+        cancel();
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.notesapp.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps every three-character sequence of the indexed text to the sorted ids of the notes that
+ * contain it. A query of three or more characters can only match notes that hold all of its
+ * trigrams, so intersecting those postings leaves a small candidate set to verify with
+ * {@code contains}. Postings are plain {@code int[]} arrays kept in ascending id order.
+ * <p>
+ * Not thread-safe.
+ */
+public class TrigramIndex {
+
+    public static final int GRAM_LENGTH = 3;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Map<Long, IntPostings> postings = new HashMap<>();
+
+    public void add(int id, String... fields) {
+        for(long gram : grams(fields)) {
+            IntPostings list = postings.get(gram);
+            if(list == null) {
+                list = new IntPostings();
+                postings.put(gram, list);
+            }
+            list.add(id);
+        }
+    }
+
+    /**
+     * Removes {@code id}; {@code fields} must be the text it was added with.
+     */
+    public void remove(int id, String... fields) {
+        for(long gram : grams(fields)) {
+            IntPostings list = postings.get(gram);
+            if(list != null) {
+                list.remove(id);
+                if(list.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns, in ascending order, the ids of every note containing all trigrams of
+     * {@code query}. The caller still has to verify each candidate. {@code query} must be at
+     * least {@link #GRAM_LENGTH} characters long.
+     */
+    public int[] candidates(String query) {
+        long[] queryGrams = grams(query);
+        IntPostings[] lists = new IntPostings[queryGrams.length];
+        for(int i = 0; i < queryGrams.length; i++) {
+            lists[i] = postings.get(queryGrams[i]);
+            if(lists[i] == null) {
+                return EMPTY;
+            }
+        }
+        IntPostings smallest = lists[0];
+        for(IntPostings list : lists) {
+            if(list.size < smallest.size) {
+                smallest = list;
+            }
+        }
+        int[] result = Arrays.copyOf(smallest.ids, smallest.size);
+        int count = result.length;
+        for(IntPostings list : lists) {
+            if(list == smallest) {
+                continue;
+            }
+            int kept = 0;
+            for(int i = 0; i < count; i++) {
+                if(list.contains(result[i])) {
+                    result[kept++] = result[i];
+                }
+            }
+            count = kept;
+            if(count == 0) {
+                return EMPTY;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    public int gramCount() {
+        return postings.size();
+    }
+
+    /**
+     * Distinct trigrams of each field, packed three chars to a long. Trigrams never span two
+     * fields, matching the per-field {@code contains} check.
+     */
+    static long[] grams(String... fields) {
+        int total = 0;
+        for(String field : fields) {
+            total += Math.max(0, field.length() - GRAM_LENGTH + 1);
+        }
+        long[] grams = new long[total];
+        int count = 0;
+        for(String field : fields) {
+            for(int i = 0; i + GRAM_LENGTH <= field.length(); i++) {
+                grams[count++] = ((long) field.charAt(i) << 32)
+                        | ((long) field.charAt(i + 1) << 16)
+                        | field.charAt(i + 2);
+            }
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for(int i = 0; i < count; i++) {
+            if(distinct == 0 || grams[distinct - 1] != grams[i]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+}
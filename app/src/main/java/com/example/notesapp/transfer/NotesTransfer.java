@@ -0,0 +1,329 @@
+package com.example.notesapp.transfer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.notesapp.dao.ImportCheckpointDao;
+import com.example.notesapp.dao.NoteDao;
+import com.example.notesapp.database.NotesDatabase;
+import com.example.notesapp.entities.ImportCheckpoint;
+import com.example.notesapp.entities.Note;
+import com.example.notesapp.images.ImageInfo;
+import com.example.notesapp.images.ImageStore;
+import com.example.notesapp.search.NotesSearcher;
+import com.example.notesapp.utilities.NoteDates;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Streams notes to and from an export folder holding {@code notes.jsonl}, one JSON object per
+ * note in id order, plus an {@code images} folder. Export reads in keyset batches and import
+ * commits in batches, so both run in constant memory. Each import batch is committed together
+ * with its checkpoint row, so an interrupted import resumes from the last committed batch.
+ */
+public class NotesTransfer {
+
+    public static final String NOTES_FILE = "notes.jsonl";
+    private static final String IMAGES_DIR = "images";
+    private static final String EXPORTS_DIR = "exports";
+    private static final String PARTIAL_EXPORTS_DIR = "exports-partial";
+    private static final int EXPORT_BATCH_SIZE = 100;
+    private static final int IMPORT_BATCH_SIZE = 500;
+    private static final int PROGRESS_INTERVAL = 100;
+
+    private final Context context;
+    private final NotesDatabase notesDatabase;
+    private final NoteDao noteDao;
+    private final ImportCheckpointDao checkpointDao;
+    private static final ExecutorService TRANSFER_EXECUTOR = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface Listener {
+        void onProgress(int done, int total);
+
+        void onFinished(int count, File directory);
+
+        void onFailed(Exception exception);
+    }
+
+    public NotesTransfer(Context context) {
+        this.context = context.getApplicationContext();
+        notesDatabase = NotesDatabase.getDatabase(this.context);
+        noteDao = notesDatabase.getNoteDao();
+        checkpointDao = notesDatabase.getImportCheckpointDao();
+    }
+
+    /**
+     * Returns {@code null} while shared storage is unavailable, e.g. unmounted.
+     */
+    public File getExportsDir() {
+        File root = context.getExternalFilesDir(null);
+        return root == null ? null : new File(root, EXPORTS_DIR);
+    }
+
+    /**
+     * Writes the export into a scratch folder next to the exports and only renames it into place
+     * once it is complete, so the import list never offers a partial export.
+     */
+    public void exportNotes(final Listener listener) {
+        TRANSFER_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                File partialDir = null;
+                try {
+                    File root = context.getExternalFilesDir(null);
+                    if(root == null) {
+                        throw new IOException("Storage is not available");
+                    }
+                    File exportsDir = new File(root, EXPORTS_DIR);
+                    if(!exportsDir.isDirectory() && !exportsDir.mkdirs()) {
+                        throw new IOException("Cannot create " + exportsDir);
+                    }
+                    String name = "notes-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date());
+                    // Exports run one at a time, so anything left here is from one that died.
+                    File scratchDir = new File(root, PARTIAL_EXPORTS_DIR);
+                    deleteRecursively(scratchDir);
+                    partialDir = new File(scratchDir, name);
+                    int count = export(partialDir, listener);
+                    File directory = new File(exportsDir, name);
+                    if(!partialDir.renameTo(directory)) {
+                        throw new IOException("Cannot move the export to " + directory);
+                    }
+                    partialDir = null;
+                    postFinished(listener, count, directory);
+                }catch (IOException | JSONException exception) {
+                    postFailed(listener, exception);
+                }finally {
+                    if(partialDir != null) {
+                        deleteRecursively(partialDir);
+                    }
+                }
+            }
+        });
+    }
+
+    public void importNotes(final File directory, final Listener listener) {
+        TRANSFER_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int count = load(directory, listener);
+                    postFinished(listener, count, directory);
+                }catch (IOException | JSONException exception) {
+                    postFailed(listener, exception);
+                }finally {
+                    // Imported notes keep their modified times, so only a full sync finds
+                    // them, including the batches committed before a failure.
+                    NotesSearcher.getInstance(context).requestSync();
+                }
+            }
+        });
+    }
+
+    private int export(File directory, Listener listener) throws IOException, JSONException {
+        File imagesDir = new File(directory, IMAGES_DIR);
+        if(!imagesDir.mkdirs()) {
+            throw new IOException("Cannot create " + imagesDir);
+        }
+        ImageStore imageStore = ImageStore.getInstance(context);
+        int total = noteDao.getNoteCount();
+        int done = 0;
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(directory, NOTES_FILE)), StandardCharsets.UTF_8))) {
+            int afterId = 0;
+            List<Note> page;
+            while(!(page = noteDao.getNotesAfter(afterId, EXPORT_BATCH_SIZE)).isEmpty()) {
+                for(Note note : page) {
+                    writer.write(toJson(note, imagesDir, imageStore).toString());
+                    writer.write('\n');
+                    done++;
+                    if(done % PROGRESS_INTERVAL == 0) {
+                        postProgress(listener, done, total);
+                    }
+                }
+                afterId = page.get(page.size() - 1).getId();
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Store blobs are named by their content hash, so an image shared by many notes is copied
+     * once under that name and every line refers to it. Paths from outside the store keep a
+     * per-note name.
+     */
+    private static JSONObject toJson(Note note, File imagesDir, ImageStore imageStore)
+            throws IOException, JSONException {
+        JSONObject line = new JSONObject();
+        line.put("title", note.getTitle());
+        line.put("date_time", note.getDateTime());
+        line.put("subtitle", note.getSubtitle());
+        line.put("note_text", note.getNoteText());
+        line.put("color", note.getColor());
+        line.put("web_link", note.getWebLink());
+        line.put("created_at", note.getCreatedAt());
+        line.put("modified_at", note.getModifiedAt());
+        String imagePath = note.getImagePath();
+        if(imagePath != null && !imagePath.trim().isEmpty()) {
+            File source = new File(imagePath);
+            if(source.isFile()) {
+                String imageName = imageStore.contains(imagePath)
+                        ? source.getName()
+                        : note.getId() + "_" + source.getName();
+                File target = new File(imagesDir, imageName);
+                if(!target.exists()) {
+                    copyFile(source, target);
+                }
+                line.put("image", imageName);
+                line.put("image_width", note.getImageWidth());
+                line.put("image_height", note.getImageHeight());
+                line.put("image_color", note.getImageColor());
+            }
+        }
+        return line;
+    }
+
+    private int load(File directory, Listener listener) throws IOException, JSONException {
+        File imagesDir = new File(directory, IMAGES_DIR);
+        ImageStore imageStore = ImageStore.getInstance(context);
+        String checkpoint = directory.getAbsolutePath();
+        Integer savedLine = checkpointDao.getLine(checkpoint);
+        int committed = savedLine == null ? 0 : savedLine;
+        int lineNumber = 0;
+        List<Note> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        NoteDates.LegacyParser legacyDates = new NoteDates.LegacyParser();
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(new File(directory, NOTES_FILE)), StandardCharsets.UTF_8))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(lineNumber++ < committed || line.trim().isEmpty()) {
+                    continue;
+                }
+                JSONObject object = new JSONObject(line);
+                Note note = new Note();
+                note.setTitle(object.optString("title", ""));
+                note.setDateTime(object.optString("date_time", null));
+                long createdAt = object.optLong("created_at", 0);
+                if(createdAt == 0) {
+                    createdAt = legacyDates.parse(note.getDateTime());
+                }
+                note.setCreatedAt(createdAt);
+                note.setModifiedAt(object.optLong("modified_at", createdAt));
+                note.setSubtitle(object.optString("subtitle", ""));
+                note.setNoteText(object.optString("note_text", ""));
+                note.setColor(object.optString("color", null));
+                note.setWebLink(object.optString("web_link", null));
+                note.setImagePath("");
+                String imageName = object.optString("image", "");
+                if(!imageName.isEmpty()) {
+                    File source = new File(imagesDir, imageName);
+                    if(source.isFile()) {
+                        note.setImagePath(imageStore.ingest(source));
+                        note.setImageWidth(object.optInt("image_width", 0));
+                        note.setImageHeight(object.optInt("image_height", 0));
+                        note.setImageColor(object.optInt("image_color", 0));
+                        if(note.getImageWidth() <= 0) {
+                            ImageInfo info = ImageInfo.read(note.getImagePath());
+                            if(info != null) {
+                                note.setImageWidth(info.width);
+                                note.setImageHeight(info.height);
+                                note.setImageColor(info.color);
+                            }
+                        }
+                    }
+                }
+                batch.add(note);
+                if(batch.size() == IMPORT_BATCH_SIZE) {
+                    committed = commit(batch, lineNumber, checkpoint);
+                    postProgress(listener, committed, -1);
+                }
+            }
+        }
+        if(!batch.isEmpty()) {
+            committed = commit(batch, lineNumber, checkpoint);
+        }
+        checkpointDao.deleteCheckpoint(checkpoint);
+        return committed;
+    }
+
+    private int commit(final List<Note> batch, final int lineNumber, final String checkpoint) {
+        notesDatabase.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                noteDao.insertNotes(batch);
+                checkpointDao.upsertCheckpoint(new ImportCheckpoint(checkpoint, lineNumber));
+            }
+        });
+        batch.clear();
+        return lineNumber;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if(children != null) {
+            for(File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void copyFile(File source, File target) throws IOException {
+        try(FileChannel in = new FileInputStream(source).getChannel();
+            FileChannel out = new FileOutputStream(target).getChannel()) {
+            long position = 0;
+            long size = in.size();
+            while(position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private void postProgress(final Listener listener, final int done, final int total) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onProgress(done, total);
+            }
+        });
+    }
+
+    private void postFinished(final Listener listener, final int count, final File directory) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onFinished(count, directory);
+            }
+        });
+    }
+
+    private void postFailed(final Listener listener, final Exception exception) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onFailed(exception);
+            }
+        });
+    }
+}
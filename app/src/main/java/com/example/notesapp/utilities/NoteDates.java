@@ -0,0 +1,74 @@
+package com.example.notesapp.utilities;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Formats note timestamps for display. Notes store epoch millis; the formatter is created once
+ * per locale and only used when a date is actually shown.
+ */
+public final class NoteDates {
+
+    public static final String DISPLAY_PATTERN = "EEEE, dd MMMM yyyy HH:mm a";
+
+    private static SimpleDateFormat displayFormat;
+    private static Locale displayLocale;
+
+    private NoteDates() {
+    }
+
+    public static synchronized String format(long millis) {
+        Locale locale = Locale.getDefault();
+        if(displayFormat == null || !locale.equals(displayLocale)) {
+            displayFormat = new SimpleDateFormat(DISPLAY_PATTERN, locale);
+            displayLocale = locale;
+        }
+        return displayFormat.format(new Date(millis));
+    }
+
+    public static String format(long millis, String legacyDateTime) {
+        if(millis > 0 || legacyDateTime == null) {
+            return format(millis);
+        }
+        return legacyDateTime;
+    }
+
+    /**
+     * Parses dates written by older versions of the app, which stored the display string in
+     * whatever locale the device had at the time. The formatters are created once, so make one
+     * parser per migration or import and use it from a single thread.
+     */
+    public static final class LegacyParser {
+
+        private final SimpleDateFormat[] formats;
+
+        public LegacyParser() {
+            Locale[] locales = {Locale.getDefault(), Locale.US, new Locale("in", "ID")};
+            formats = new SimpleDateFormat[locales.length];
+            for(int i = 0; i < locales.length; i++) {
+                formats[i] = new SimpleDateFormat(DISPLAY_PATTERN, locales[i]);
+            }
+        }
+
+        /**
+         * Returns 0 when {@code dateTime} can't be parsed.
+         */
+        public long parse(String dateTime) {
+            if(dateTime == null || dateTime.trim().isEmpty()) {
+                return 0;
+            }
+            for(SimpleDateFormat format : formats) {
+                try {
+                    Date date = format.parse(dateTime);
+                    if(date != null) {
+                        return date.getTime();
+                    }
+                }catch (ParseException ignored) {
+                }
+            }
+            return 0;
+        }
+    }
+}
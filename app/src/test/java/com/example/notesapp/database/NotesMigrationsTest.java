@@ -0,0 +1,415 @@
+package com.example.notesapp.database;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.room.migration.Migration;
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.notesapp.dao.NoteDao;
+import com.example.notesapp.entities.Note;
+import com.example.notesapp.entities.NoteSummary;
+import com.example.notesapp.search.FtsQuery;
+import com.example.notesapp.utilities.NoteDates;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Older versions are built from the version 1 table plus the migrations up to them, since that is
+ * how every installed database got there. Each upgrade then runs to the latest version and is
+ * validated by {@link MigrationTestHelper} against the schema Room exports at build time.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NotesMigrationsTest {
+
+    private static final String DATABASE_NAME = "migration-test";
+    private static final int NOTE_COUNT = 20000;
+    /** Generous per-row budget for the full upgrade, so a slow CI machine does not fail it. */
+    private static final long MAX_MIGRATION_MILLIS_PER_NOTE = 2;
+    private static final long FIRST_NOTE_MILLIS = 1672531200000L;
+    private static final int LATEST_VERSION = NotesMigrations.ALL[NotesMigrations.ALL.length - 1].endVersion;
+
+    private static final String CREATE_NOTES_V1 = "CREATE TABLE IF NOT EXISTS `notes` (" +
+            "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `title` TEXT, `date_time` TEXT, " +
+            "`subtitle` TEXT, `note_text` TEXT, `image_path` TEXT, `color` TEXT, `web_link` TEXT)";
+
+    @Rule
+    public final MigrationTestHelper helper = new MigrationTestHelper(
+            InstrumentationRegistry.getInstrumentation(),
+            NotesDatabase.class
+    );
+
+    private Context context;
+    private Locale defaultLocale;
+    private NotesDatabase notesDatabase;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+        defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+    }
+
+    @After
+    public void tearDown() {
+        if(notesDatabase != null) {
+            notesDatabase.close();
+        }
+        context.deleteDatabase(DATABASE_NAME);
+        Locale.setDefault(defaultLocale);
+    }
+
+    @Test
+    public void migrate1To2_indexesExistingNotes() throws IOException {
+        SupportSQLiteDatabase database = createDatabase(1);
+        insertNote(database, "Groceries", "Buy oranges");
+        database.close();
+
+        database = migrateToLatest(1);
+
+        assertEquals(1, count(database, "SELECT COUNT(*) FROM `notes_fts` WHERE `notes_fts` MATCH 'oranges'"));
+        insertNote(database, "Later", "Added after the upgrade");
+        assertEquals(1, count(database, "SELECT COUNT(*) FROM `notes_fts` WHERE `notes_fts` MATCH 'upgrade'"));
+    }
+
+    @Test
+    public void migrate2To3_startsEveryNoteAtVersionZero() throws IOException {
+        SupportSQLiteDatabase database = createDatabase(2);
+        insertNote(database, "Groceries", "Buy oranges");
+        database.close();
+
+        database = migrateToLatest(2);
+
+        assertEquals(1, count(database, "SELECT COUNT(*) FROM `notes` WHERE `version` = 0"));
+    }
+
+    @Test
+    public void migrate3To4_backfillsTimestampsAndKeepsFtsInSync() throws IOException {
+        SupportSQLiteDatabase database = createDatabase(3);
+        insertNote(database, "Groceries", "Buy oranges");
+        database.execSQL("INSERT INTO `notes` (`title`, `date_time`, `note_text`) VALUES ('Odd', 'not a date', 'x')");
+        database.close();
+
+        database = migrateToLatest(3);
+
+        assertEquals(FIRST_NOTE_MILLIS, count(database, "SELECT `created_at` FROM `notes` WHERE `id` = 1"));
+        assertEquals(FIRST_NOTE_MILLIS, count(database, "SELECT `modified_at` FROM `notes` WHERE `id` = 1"));
+        assertEquals(0, count(database, "SELECT `created_at` FROM `notes` WHERE `id` = 2"));
+        database.execSQL("UPDATE `notes` SET `note_text` = 'Buy lemons' WHERE `id` = 1");
+        assertEquals(0, count(database, "SELECT COUNT(*) FROM `notes_fts` WHERE `notes_fts` MATCH 'oranges'"));
+        assertEquals(1, count(database, "SELECT COUNT(*) FROM `notes_fts` WHERE `notes_fts` MATCH 'lemons'"));
+    }
+
+    @Test
+    public void migrate4To5_addsEmptyImageInfo() throws IOException {
+        SupportSQLiteDatabase database = createDatabase(4);
+        insertNote(database, "Groceries", "Buy oranges");
+        database.close();
+
+        database = migrateToLatest(4);
+
+        assertEquals(1, count(database, "SELECT COUNT(*) FROM `notes` WHERE `note_text` = 'Buy oranges' " +
+                "AND `image_width` = 0 AND `image_height` = 0 AND `image_color` = 0"));
+    }
+
+    @Test
+    public void migrate5To6_createsEmptyRevisionHistory() throws IOException {
+        SupportSQLiteDatabase database = createDatabase(5);
+        insertNote(database, "Groceries", "Buy oranges");
+        database.close();
+
+        database = migrateToLatest(5);
+
+        assertEquals(1, count(database, "SELECT COUNT(*) FROM `notes`"));
+        assertEquals(0, count(database, "SELECT COUNT(*) FROM `note_revisions`"));
+        database.execSQL("INSERT INTO `note_revisions` (`note_id`, `created_at`, `snapshot`, `text_prefix`, " +
+                "`text_suffix`, `text_inserted`) VALUES (1, 1, 1, 0, 0, 'Buy oranges')");
+        assertEquals(1, count(database, "SELECT `id` FROM `note_revisions` WHERE `note_id` = 1"));
+    }
+
+    @Test
+    public void migrate6To7_createsEmptyImportCheckpoints() throws IOException {
+        SupportSQLiteDatabase database = createDatabase(6);
+        insertNote(database, "Groceries", "Buy oranges");
+        database.close();
+
+        database = migrateToLatest(6);
+
+        assertEquals(1, count(database, "SELECT COUNT(*) FROM `notes`"));
+        assertEquals(0, count(database, "SELECT COUNT(*) FROM `import_checkpoints`"));
+        database.execSQL("INSERT OR REPLACE INTO `import_checkpoints` (`source`, `line`) VALUES ('backup', 100)");
+        database.execSQL("INSERT OR REPLACE INTO `import_checkpoints` (`source`, `line`) VALUES ('backup', 200)");
+        assertEquals(200, count(database, "SELECT `line` FROM `import_checkpoints` WHERE `source` = 'backup'"));
+    }
+
+    @Test
+    public void migrate7To8_pagesDatesOnTheIndex() throws IOException {
+        SupportSQLiteDatabase database = createDatabase(7);
+        insertNote(database, "Groceries", "Buy oranges");
+        database.close();
+
+        database = migrateToLatest(7);
+
+        assertEquals(0, count(database, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' " +
+                "AND name IN ('index_notes_created_at', 'index_notes_modified_at')"));
+        List<String> queries = new ArrayList<>(Arrays.asList(
+                NoteDao.BY_MODIFIED_COMPAT,
+                NoteDao.BY_CREATED_COMPAT,
+                NoteDao.MODIFIED_BETWEEN,
+                NoteDao.CREATED_BETWEEN
+        ));
+        if(supportsRowValues(database)) {
+            queries.add(NoteDao.BY_MODIFIED);
+            queries.add(NoteDao.BY_CREATED);
+        }
+        for(String query : queries) {
+            String plan = queryPlan(database, query, 0, Integer.MAX_VALUE, 20);
+            assertTrue(plan, plan.contains("USING INDEX index_notes_"));
+            assertFalse(plan, plan.contains("SCAN"));
+            assertFalse(plan, plan.contains("TEMP B-TREE"));
+        }
+        String plan = queryPlan(database, NoteDao.VERSIONS_SINCE, 0);
+        assertTrue(plan, plan.contains("USING INDEX index_notes_modified_at_id"));
+        assertFalse(plan, plan.contains("SCAN"));
+    }
+
+    @Test
+    public void migrateFromVersion1_keepsEveryNoteAndFillsNewColumns() throws IOException {
+        createVersion1Database();
+
+        long start = System.nanoTime();
+        NoteDao noteDao = openMigratedDatabase().getNoteDao();
+        assertEquals(NOTE_COUNT, noteDao.getNoteCount());
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue(
+                "Upgrading " + NOTE_COUNT + " notes took " + elapsedMillis + " ms",
+                elapsedMillis < NOTE_COUNT * MAX_MIGRATION_MILLIS_PER_NOTE
+        );
+
+        Note first = noteDao.getNoteById(1);
+        assertEquals("Title 1", first.getTitle());
+        assertEquals("Text of note number 1", first.getNoteText());
+        assertEquals(0, first.getVersion());
+        assertEquals(FIRST_NOTE_MILLIS, first.getCreatedAt());
+        assertEquals(FIRST_NOTE_MILLIS, first.getModifiedAt());
+
+        int checked = 0;
+        try(Cursor cursor = notesDatabase.query("SELECT `id`, `title`, `created_at`, `modified_at`, `version`, " +
+                "`image_width` FROM `notes` ORDER BY `id`", null)) {
+            while(cursor.moveToNext()) {
+                int id = cursor.getInt(0);
+                long expectedMillis = FIRST_NOTE_MILLIS + (id - 1) * 60000L;
+                assertEquals("Title " + id, cursor.getString(1));
+                assertEquals(expectedMillis, cursor.getLong(2));
+                assertEquals(expectedMillis, cursor.getLong(3));
+                assertEquals(0, cursor.getInt(4));
+                assertEquals(0, cursor.getInt(5));
+                checked++;
+            }
+        }
+        assertEquals(NOTE_COUNT, checked);
+    }
+
+    @Test
+    public void migrateFromVersion1_indexesExistingNotesForSearch() throws IOException {
+        createVersion1Database();
+        NoteDao noteDao = openMigratedDatabase().getNoteDao();
+
+        List<NoteSummary> results = noteDao.searchNoteSummaries(FtsQuery.build("number 19999"), 10);
+
+        assertEquals(1, results.size());
+        assertEquals(19999, results.get(0).getId());
+    }
+
+    @Test
+    public void migrateFromVersion1_keepsFtsInSyncAfterwards() throws IOException {
+        createVersion1Database();
+        NoteDao noteDao = openMigratedDatabase().getNoteDao();
+
+        Note note = noteDao.getNoteById(7);
+        note.setTitle("Quarterly planning");
+        noteDao.updateNote(note);
+
+        List<NoteSummary> results = noteDao.searchNoteSummaries(FtsQuery.build("quarter"), 10);
+        assertEquals(1, results.size());
+        assertEquals(7, results.get(0).getId());
+
+        noteDao.deleteNote(note);
+        assertTrue(noteDao.searchNoteSummaries(FtsQuery.build("quarter"), 10).isEmpty());
+    }
+
+    @Test
+    public void migrateFromVersion1_reindexesOnlyWhenIndexedTextChanges() throws IOException {
+        SupportSQLiteDatabase database = createDatabase(1);
+        insertNote(database, "Groceries", "Buy oranges");
+        database.close();
+        NoteDao noteDao = openMigratedDatabase().getNoteDao();
+        database = notesDatabase.getOpenHelper().getWritableDatabase();
+
+        assertEquals(2, count(database, "SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' " +
+                "AND name LIKE 'room_fts_content_sync_notes_fts_%_UPDATE' AND sql LIKE '%UPDATE OF%'"));
+
+        // total_changes() counts the rows triggers write too, FTS shadow tables included.
+        long before = count(database, "SELECT total_changes()");
+        noteDao.updateNotesColor(Arrays.asList(1), "#FF4842", FIRST_NOTE_MILLIS);
+        Note note = noteDao.getNoteById(1);
+        noteDao.updateNote(note);
+        assertEquals(2, count(database, "SELECT total_changes()") - before);
+
+        before = count(database, "SELECT total_changes()");
+        note.setNoteText("Buy lemons");
+        noteDao.updateNote(note);
+        assertTrue(count(database, "SELECT total_changes()") - before > 1);
+        assertEquals(1, noteDao.searchNoteSummaries(FtsQuery.build("lemons"), 10).size());
+        assertTrue(noteDao.searchNoteSummaries(FtsQuery.build("oranges"), 10).isEmpty());
+        assertEquals(1, noteDao.searchNoteSummaries(FtsQuery.build("groceries"), 10).size());
+    }
+
+    @Test
+    public void migrateFromVersion1_leavesUnparseableDatesAtZero() throws IOException {
+        SupportSQLiteDatabase database = createDatabase(1);
+        database.execSQL("INSERT INTO `notes` (`title`, `date_time`, `subtitle`, `note_text`) " +
+                "VALUES ('Odd', 'not a date', '', 'text')");
+        database.close();
+
+        Note note = openMigratedDatabase().getNoteDao().getNoteById(1);
+
+        assertEquals(0, note.getCreatedAt());
+        assertEquals("not a date", NoteDates.format(note.getCreatedAt(), note.getDateTime()));
+    }
+
+    private SupportSQLiteDatabase createDatabase(final int version) {
+        SupportSQLiteOpenHelper.Configuration configuration = SupportSQLiteOpenHelper.Configuration
+                .builder(context)
+                .name(DATABASE_NAME)
+                .callback(new SupportSQLiteOpenHelper.Callback(version) {
+                    @Override
+                    public void onCreate(SupportSQLiteDatabase db) {
+                        db.execSQL(CREATE_NOTES_V1);
+                        for(Migration migration : NotesMigrations.ALL) {
+                            if(migration.endVersion <= version) {
+                                migration.migrate(db);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onUpgrade(SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+                    }
+                })
+                .build();
+        return new FrameworkSQLiteOpenHelperFactory().create(configuration).getWritableDatabase();
+    }
+
+    /**
+     * Runs every migration from {@code version} on and validates the result against the latest
+     * exported schema.
+     */
+    private SupportSQLiteDatabase migrateToLatest(int version) throws IOException {
+        Migration[] migrations = Arrays.copyOfRange(NotesMigrations.ALL, version - 1, NotesMigrations.ALL.length);
+        return helper.runMigrationsAndValidate(DATABASE_NAME, LATEST_VERSION, true, migrations);
+    }
+
+    /**
+     * The argument values do not change the plan, only their number has to match the query.
+     */
+    private static String queryPlan(SupportSQLiteDatabase database, String query, Object... args) {
+        StringBuilder plan = new StringBuilder();
+        try(Cursor cursor = database.query("EXPLAIN QUERY PLAN " + query, args)) {
+            while(cursor.moveToNext()) {
+                plan.append(cursor.getString(cursor.getColumnCount() - 1)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    /**
+     * Row values need SQLite 3.15; the JVM test runtime may ship an older one.
+     */
+    private static boolean supportsRowValues(SupportSQLiteDatabase database) {
+        try(Cursor cursor = database.query("SELECT sqlite_version()")) {
+            cursor.moveToFirst();
+            String[] parts = cursor.getString(0).split("\\.");
+            int major = Integer.parseInt(parts[0]);
+            int minor = Integer.parseInt(parts[1]);
+            return major > 3 || (major == 3 && minor >= 15);
+        }
+    }
+
+    private void insertNote(SupportSQLiteDatabase database, String title, String noteText) {
+        SimpleDateFormat legacyFormat = new SimpleDateFormat(NoteDates.DISPLAY_PATTERN, Locale.US);
+        SupportSQLiteStatement insert = database.compileStatement(
+                "INSERT INTO `notes` (`title`, `date_time`, `subtitle`, `note_text`) VALUES (?, ?, '', ?)"
+        );
+        insert.bindString(1, title);
+        insert.bindString(2, legacyFormat.format(new Date(FIRST_NOTE_MILLIS)));
+        insert.bindString(3, noteText);
+        insert.executeInsert();
+    }
+
+    private static long count(SupportSQLiteDatabase database, String query) {
+        try(Cursor cursor = database.query(query)) {
+            assertTrue(query, cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    private void createVersion1Database() throws IOException {
+        SupportSQLiteDatabase database = createDatabase(1);
+        SimpleDateFormat legacyFormat = new SimpleDateFormat(NoteDates.DISPLAY_PATTERN, Locale.US);
+        SupportSQLiteStatement insert = database.compileStatement(
+                "INSERT INTO `notes` (`title`, `date_time`, `subtitle`, `note_text`, `image_path`, `color`) " +
+                        "VALUES (?, ?, ?, ?, '', '#333333')"
+        );
+        database.beginTransaction();
+        try {
+            for(int i = 1; i <= NOTE_COUNT; i++) {
+                insert.bindString(1, "Title " + i);
+                insert.bindString(2, legacyFormat.format(new Date(FIRST_NOTE_MILLIS + (i - 1) * 60000L)));
+                insert.bindString(3, i % 3 == 0 ? "" : "Subtitle " + i);
+                insert.bindString(4, "Text of note number " + i);
+                insert.executeInsert();
+            }
+            database.setTransactionSuccessful();
+        }finally {
+            database.endTransaction();
+        }
+        try(Cursor cursor = database.query("SELECT COUNT(*) FROM `notes`")) {
+            cursor.moveToFirst();
+            assertEquals(NOTE_COUNT, cursor.getInt(0));
+        }
+        database.close();
+    }
+
+    private NotesDatabase openMigratedDatabase() {
+        notesDatabase = Room.databaseBuilder(context, NotesDatabase.class, DATABASE_NAME)
+                .addMigrations(NotesMigrations.ALL)
+                .addCallback(NotesDatabase.NARROW_FTS_TRIGGERS)
+                .allowMainThreadQueries()
+                .build();
+        return notesDatabase;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.notesapp.revisions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.notesapp.database.NotesDatabase;
+import com.example.notesapp.entities.Note;
+import com.example.notesapp.entities.NoteRevision;
+import com.example.notesapp.entities.NoteRevisionSummary;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+@RunWith(RobolectricTestRunner.class)
+public class RevisionStoreTest {
+
+    private static final long MINUTE = 60L * 1000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long SAVED_AT = 1672567320000L;
+
+    private final Random random = new Random(42);
+    private NotesDatabase notesDatabase;
+
+    @After
+    public void tearDown() {
+        if(notesDatabase != null) {
+            notesDatabase.close();
+        }
+    }
+
+    @Test
+    public void editingASavedNoteMinutesLaterKeepsTheSavedVersion() {
+        RevisionStore store = openStore();
+        Note saved = note("A", SAVED_AT);
+        int noteId = (int) notesDatabase.getNoteDao().insertNote(saved);
+        store.record(noteId, saved, RevisionStore.newSession());
+
+        store.record(noteId, note("B", SAVED_AT + 4 * MINUTE), RevisionStore.newSession());
+
+        List<NoteRevisionSummary> revisions = notesDatabase.getNoteRevisionDao().getRevisionSummaries(noteId);
+        assertEquals(2, revisions.size());
+        assertEquals("B", store.restore(noteId, revisions.get(0).getId()).noteText);
+        assertEquals("A", store.restore(noteId, revisions.get(1).getId()).noteText);
+    }
+
+    @Test
+    public void autosavesOfOneSessionShareARevisionUntilTheyPause() {
+        RevisionStore store = openStore();
+        long session = RevisionStore.newSession();
+        Note first = note("A", SAVED_AT);
+        int noteId = (int) notesDatabase.getNoteDao().insertNote(first);
+        store.record(noteId, first, session);
+        store.record(noteId, note("AB", SAVED_AT + MINUTE), session);
+        store.record(noteId, note("ABC", SAVED_AT + 2 * MINUTE), session);
+
+        List<NoteRevisionSummary> revisions = notesDatabase.getNoteRevisionDao().getRevisionSummaries(noteId);
+        assertEquals(1, revisions.size());
+        assertEquals("ABC", store.restore(noteId, revisions.get(0).getId()).noteText);
+
+        store.record(noteId, note("ABCD", SAVED_AT + 2 * MINUTE + RevisionStore.SESSION_IDLE_MILLIS), session);
+
+        revisions = notesDatabase.getNoteRevisionDao().getRevisionSummaries(noteId);
+        assertEquals(2, revisions.size());
+        assertEquals("ABC", store.restore(noteId, revisions.get(1).getId()).noteText);
+    }
+
+    @Test
+    public void firstEditOfANoteWithoutHistoryKeepsTheBaseline() {
+        RevisionStore store = openStore();
+        Note legacy = note("legacy", 0);
+        int noteId = (int) notesDatabase.getNoteDao().insertNote(legacy);
+        long now = System.currentTimeMillis();
+        long session = RevisionStore.newSession();
+
+        store.recordBaseline(noteId);
+        store.record(noteId, note("edited", now), session);
+        store.record(noteId, note("edited again", now + MINUTE), session);
+
+        List<NoteRevisionSummary> revisions = notesDatabase.getNoteRevisionDao().getRevisionSummaries(noteId);
+        assertEquals(2, revisions.size());
+        assertEquals("edited again", store.restore(noteId, revisions.get(0).getId()).noteText);
+        assertEquals("legacy", store.restore(noteId, revisions.get(1).getId()).noteText);
+    }
+
+    @Test
+    public void deltasRoundTripRandomEdits() {
+        String text = randomText(2000);
+        for(int i = 0; i < 500; i++) {
+            String edited = edit(text);
+            TextDelta delta = TextDelta.between(text, edited);
+            assertEquals(edited, delta.applyTo(text));
+            assertTrue(delta.inserted.length() <= edited.length());
+            text = edited;
+        }
+    }
+
+    @Test
+    public void deltaOfSingleInsertStoresOnlyTheInsert() {
+        String base = randomText(50000);
+        String edited = base.substring(0, 25000) + "hello" + base.substring(25000);
+        TextDelta delta = TextDelta.between(base, edited);
+        assertEquals("hello", delta.inserted);
+        assertEquals(edited, delta.applyTo(base));
+    }
+
+    @Test
+    public void followedByCombinesTwoEdits() {
+        String base = randomText(2000);
+        for(int i = 0; i < 500; i++) {
+            String first = edit(base);
+            String second = edit(first);
+            TextDelta combined = TextDelta.between(base, first)
+                    .followedBy(TextDelta.between(first, second), second);
+            assertEquals(second, combined.applyTo(base));
+            base = second;
+        }
+    }
+
+    @Test
+    public void thinningKeepsRecentRevisionsAndRebuildsKeptTexts() {
+        long now = 30 * 24 * HOUR;
+        List<NoteRevision> revisions = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        String previous = null;
+        String text = randomText(3000);
+        int sinceSnapshot = 0;
+        for(int i = 0; i < 400; i++) {
+            text = edit(text);
+            NoteRevision revision = new NoteRevision();
+            revision.setId(i + 1);
+            revision.setCreatedAt(now - (400 - i) * 3 * HOUR / 2);
+            TextDelta delta = previous == null || sinceSnapshot + 1 >= RevisionStore.SNAPSHOT_INTERVAL
+                    ? TextDelta.snapshot(text)
+                    : TextDelta.between(previous, text);
+            revision.setSnapshot(delta.prefix == 0 && delta.suffix == 0);
+            revision.setTextPrefix(delta.prefix);
+            revision.setTextSuffix(delta.suffix);
+            revision.setTextInserted(delta.inserted);
+            sinceSnapshot = revision.isSnapshot() ? 0 : sinceSnapshot + 1;
+            revisions.add(revision);
+            texts.add(text);
+            previous = text;
+        }
+
+        List<NoteRevision> kept = RevisionStore.thin(new ArrayList<>(revisions), now);
+
+        assertTrue(kept.size() < revisions.size());
+        assertTrue(kept.size() <= RevisionStore.MAX_REVISIONS_PER_NOTE);
+        assertEquals(revisions.get(revisions.size() - 1), kept.get(kept.size() - 1));
+        assertTrue(kept.get(0).isSnapshot());
+        int sinceKeptSnapshot = 0;
+        int keptRecent = 0;
+        for(int i = 0; i < kept.size(); i++) {
+            NoteRevision revision = kept.get(i);
+            sinceKeptSnapshot = revision.isSnapshot() ? 0 : sinceKeptSnapshot + 1;
+            assertTrue(sinceKeptSnapshot < RevisionStore.SNAPSHOT_INTERVAL);
+            if(revision.getCreatedAt() >= now - RevisionStore.KEEP_ALL_MILLIS) {
+                keptRecent++;
+            }
+            int start = i;
+            while(!kept.get(start).isSnapshot()) {
+                start--;
+            }
+            RevisionStore.Content content = RevisionStore.rebuild(kept.subList(start, i + 1));
+            assertEquals(texts.get(revision.getId() - 1), content.noteText);
+        }
+        int recent = 0;
+        for(NoteRevision revision : revisions) {
+            if(revision.getCreatedAt() >= now - RevisionStore.KEEP_ALL_MILLIS) {
+                recent++;
+            }
+        }
+        assertEquals(recent, keptRecent);
+    }
+
+    private RevisionStore openStore() {
+        notesDatabase = Room.inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), NotesDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        return new RevisionStore(notesDatabase);
+    }
+
+    private static Note note(String noteText, long modifiedAt) {
+        Note note = new Note();
+        note.setTitle("Title");
+        note.setSubtitle("");
+        note.setNoteText(noteText);
+        note.setCreatedAt(SAVED_AT);
+        note.setModifiedAt(modifiedAt);
+        return note;
+    }
+
+    private String edit(String text) {
+        int start = random.nextInt(text.length() + 1);
+        int end = Math.min(text.length(), start + random.nextInt(20));
+        return text.substring(0, start) + randomText(random.nextInt(30)) + text.substring(end);
+    }
+
+    private String randomText(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for(int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(6)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.notesapp.search;
+
+import com.example.notesapp.entities.Note;
+import com.example.notesapp.entities.NoteSummary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the trigram-backed engine against a plain case-insensitive {@code contains} scan over
+ * the same notes, including after updates and deletes, plus a few fuzzy lookups. Ranked search is
+ * checked for its ordering on small hand-scored corpora and against a full sort of every score.
+ */
+public class NoteSearchEngineTest {
+
+    private static final String[] WORDS = {
+            "Meeting", "meet", "notes", "Groceries", "tomato", "Tommy", "ab", "abc", "abcabc",
+            "aaa", "caf\u00e9", "Report", "re-port", "2023", "x", "to-do", "TODO", "\u00c9t\u00e9", "SUMMARY"
+    };
+
+    private final Random random = new Random(42);
+    private final Map<Integer, Note> notes = new HashMap<>();
+    private NoteSearchEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new NoteSearchEngine();
+        for(int id = 1; id <= 2000; id++) {
+            putNote(id);
+        }
+    }
+
+    @Test
+    public void matchesContainsForRandomQueries() {
+        assertAllQueriesMatch();
+    }
+
+    @Test
+    public void matchesContainsAfterUpdatesAndDeletes() {
+        for(int i = 0; i < 300; i++) {
+            putNote(1 + random.nextInt(2000));
+        }
+        for(int i = 0; i < 300; i++) {
+            int id = 1 + random.nextInt(2000);
+            notes.remove(id);
+            engine.remove(id);
+        }
+        assertAllQueriesMatch();
+    }
+
+    @Test
+    public void refinedQueriesMatchContains() {
+        String[] typed = {"t", "to", "tom", "toma", "tomat", "tomato", "tomat", "tom", "todo", "to-"};
+        for(String query : typed) {
+            assertEquals(query, expected(query), actual(query));
+        }
+        putNote(2001);
+        for(String query : typed) {
+            assertEquals(query, expected(query), actual(query));
+        }
+    }
+
+    @Test
+    public void fuzzySearchToleratesTyposAndRanksClosestFirst() {
+        engine = new NoteSearchEngine();
+        engine.put(note(1, "Weekly meeting", "with Tommy", 300));
+        engine.put(note(2, "Meetings archive", null, 200));
+        engine.put(note(3, "Groceries", "tomatoes", 100));
+
+        assertEquals(ids(1, 2), ids(engine.searchFuzzy("meetign", 10)));
+        assertEquals(ids(1), ids(engine.searchFuzzy("metting tomy", 10)));
+        assertEquals(ids(3), ids(engine.searchFuzzy("tomat", 10)));
+
+        engine.put(note(2, "Meetings archive", null, 400));
+        assertEquals(ids(2, 1), ids(engine.searchFuzzy("meetign", 10)));
+
+        engine.remove(1);
+        assertEquals(ids(2), ids(engine.searchFuzzy("meetign", 10)));
+    }
+
+    @Test
+    public void hitsCarryMatchOffsetsAndSnippet() {
+        engine = new NoteSearchEngine();
+        Note note = note(1, "Tomato soup", "Buy TOMATOES", 0);
+        note.setNoteText("Dinner plan. Slice the tomato,\nthen simmer.");
+        engine.put(note);
+
+        SearchHit hit = (SearchHit) engine.search("tomat", 10).get(0);
+        assertArrayEquals(new int[] {0, 5}, hit.getTitleMatches());
+        assertArrayEquals(new int[] {4, 9}, hit.getSubtitleMatches());
+        assertEquals("Dinner plan. Slice the tomato, then simmer.", hit.getSnippet());
+        assertArrayEquals(new int[] {23, 28}, hit.getSnippetMatches());
+
+        hit = (SearchHit) engine.searchRanked("soup", 10).get(0);
+        assertArrayEquals(new int[] {7, 11}, hit.getTitleMatches());
+        assertNull(hit.getSnippet());
+    }
+
+    @Test
+    public void savedNoteKeepsTheSnippetOnlyWhileItsVersionIsUnchanged() {
+        engine = new NoteSearchEngine();
+        Note note = note(1, "Soup", null, 0);
+        StringBuilder noteText = new StringBuilder();
+        while(noteText.length() < NoteSummary.PREVIEW_LENGTH) {
+            noteText.append("Stir well. ");
+        }
+        note.setNoteText(noteText.append("Add the tomato last.").toString());
+        note.setVersion(3);
+        engine.put(note);
+        SearchHit hit = (SearchHit) engine.search("tomato", 10).get(0);
+
+        // An edit past the preview leaves the summary's fields alone but bumps the version.
+        NoteSummary saved = SearchHit.of(hit);
+        saved.setVersion(4);
+        assertNull(hit.withSummary(saved).getSnippet());
+
+        saved.setVersion(3);
+        saved.setColor("#FF4842");
+        assertEquals(hit.getSnippet(), hit.withSummary(saved).getSnippet());
+        assertArrayEquals(hit.getSnippetMatches(), hit.withSummary(saved).getSnippetMatches());
+    }
+
+    @Test
+    public void rankedSearchWeighsTitleHitsAboveBodyHits() {
+        engine = new NoteSearchEngine();
+        engine.put(note(1, "Budget review", null, "plans for spring"));
+        engine.put(note(2, "Spring review", null, "plans for budget"));
+        engine.put(note(3, "Garden review", null, "plans for roses"));
+
+        // Ties go to the higher id, so only the score can put note 1 first. Same lengths
+        // everywhere, so only the field weight differs: 3 in the title, 1 in the body.
+        // Saturated, that is 3 * 2.2 / 4.2 = 1.57 against 1 * 2.2 / 2.2 = 1.
+        assertEquals(ids(1, 2), ids(engine.searchRanked("budget", 10)));
+    }
+
+    @Test
+    public void rankedSearchWeighsRareTermsAboveCommonOnes() {
+        engine = new NoteSearchEngine();
+        for(int id = 1; id <= 5; id++) {
+            engine.put(note(id, "Dessert", null, "apple pie today"));
+        }
+        engine.put(note(6, "Dessert", null, "kiwi pie today"));
+
+        // idf(apple) = ln(1 + 1.5 / 5.5) = 0.24, idf(kiwi) = ln(1 + 5.5 / 1.5) = 1.54.
+        assertEquals(ids(6, 5, 4, 3, 2, 1), ids(engine.searchRanked("apple kiwi", 10)));
+    }
+
+    @Test
+    public void rankedSearchNormalizesForFieldLength() {
+        engine = new NoteSearchEngine();
+        engine.put(note(1, "Lunch", null, "tomato soup"));
+        engine.put(note(2, "Lunch", null,
+                "tomato with fresh bread, cheese, olives, peppers, onions, basil, salt and a little oil"));
+        engine.put(note(3, "Lunch", null, "green salad"));
+
+        // Body lengths 14, 2 and 2 average 6, so one mention counts 1 / (0.25 + 0.75 * 14 / 6) = 0.5
+        // in the long note and 1 / (0.25 + 0.75 * 2 / 6) = 2 in the short one.
+        assertEquals(ids(1, 2), ids(engine.searchRanked("tomato", 10)));
+    }
+
+    @Test
+    public void rankedTopKMatchesAFullSortOfEveryScore() {
+        String[] queries = {
+                "meeting", "tomato tommy", "report 2023", "caf\u00e9 notes", "to", "abc", "x groceries", "todo"
+        };
+        for(String query : queries) {
+            List<Integer> expected = fullRanking(NoteSearchEngine.normalize(query));
+            for(int k : new int[] {1, 10, 100}) {
+                List<Integer> actual = ids(engine.searchRanked(query, k));
+                assertEquals(query + " top " + k, expected.subList(0, Math.min(k, expected.size())), actual);
+            }
+        }
+    }
+
+    /**
+     * Scores every note from scratch with the BM25F formula and sorts them all, best first and
+     * the higher id first on ties, as the engine breaks them.
+     */
+    private List<Integer> fullRanking(String query) {
+        int[] totalLengths = new int[Bm25Index.FIELD_COUNT];
+        Map<Integer, int[]> lengths = new HashMap<>();
+        Map<Integer, Map<String, int[]>> frequencies = new HashMap<>();
+        Map<String, Integer> documentFrequencies = new TreeMap<>();
+        for(Note note : notes.values()) {
+            int[] noteLengths = new int[Bm25Index.FIELD_COUNT];
+            Map<String, int[]> noteFrequencies = Bm25Index.termFrequencies(new String[] {
+                    NoteSearchEngine.normalize(note.getTitle()),
+                    NoteSearchEngine.normalize(note.getSubtitle()),
+                    NoteSearchEngine.normalize(note.getNoteText())
+            }, noteLengths);
+            lengths.put(note.getId(), noteLengths);
+            frequencies.put(note.getId(), noteFrequencies);
+            for(int f = 0; f < Bm25Index.FIELD_COUNT; f++) {
+                totalLengths[f] += noteLengths[f];
+            }
+            for(String term : noteFrequencies.keySet()) {
+                Integer count = documentFrequencies.get(term);
+                documentFrequencies.put(term, count == null ? 1 : count + 1);
+            }
+        }
+
+        // Every query term counts as typed, and the last one also as a prefix of longer terms.
+        List<String> queryTerms = new ArrayList<>(FuzzyIndex.terms(query));
+        List<String> scoredTerms = new ArrayList<>();
+        for(int i = 0; i < queryTerms.size() - 1; i++) {
+            if(documentFrequencies.containsKey(queryTerms.get(i))) {
+                scoredTerms.add(queryTerms.get(i));
+            }
+        }
+        String last = queryTerms.get(queryTerms.size() - 1);
+        int expansions = 0;
+        for(String term : documentFrequencies.keySet()) {
+            if(term.startsWith(last) && expansions++ < Bm25Index.MAX_PREFIX_EXPANSIONS) {
+                scoredTerms.add(term);
+            }
+        }
+
+        int documentCount = notes.size();
+        final Map<Integer, Double> scores = new HashMap<>();
+        for(String term : scoredTerms) {
+            int documentFrequency = documentFrequencies.get(term);
+            double idf = Math.log(1.0 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+            for(Note note : notes.values()) {
+                int[] counts = frequencies.get(note.getId()).get(term);
+                if(counts == null) {
+                    continue;
+                }
+                double frequency = 0;
+                for(int f = 0; f < Bm25Index.FIELD_COUNT; f++) {
+                    double averageLength = Math.max(1.0, (double) totalLengths[f] / documentCount);
+                    if(counts[f] > 0) {
+                        frequency += Bm25Index.FIELD_WEIGHTS[f] * counts[f]
+                                / (1 - Bm25Index.B + Bm25Index.B * lengths.get(note.getId())[f] / averageLength);
+                    }
+                }
+                Double score = scores.get(note.getId());
+                scores.put(note.getId(), (score == null ? 0 : score)
+                        + idf * frequency * (Bm25Index.K1 + 1) / (Bm25Index.K1 + frequency));
+            }
+        }
+        List<Integer> ranking = new ArrayList<>(scores.keySet());
+        Collections.sort(ranking, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byScore = Double.compare(scores.get(b), scores.get(a));
+                return byScore != 0 ? byScore : Integer.compare(b, a);
+            }
+        });
+        return ranking;
+    }
+
+    private static Note note(int id, String title, String subtitle, String noteText) {
+        Note note = note(id, title, subtitle, 0);
+        note.setNoteText(noteText);
+        return note;
+    }
+
+    private static Note note(int id, String title, String subtitle, long modifiedAt) {
+        Note note = new Note();
+        note.setModifiedAt(modifiedAt);
+        note.setId(id);
+        note.setTitle(title);
+        note.setSubtitle(subtitle);
+        note.setNoteText("");
+        return note;
+    }
+
+    private static List<Integer> ids(Integer... ids) {
+        return Arrays.asList(ids);
+    }
+
+    private static List<Integer> ids(List<NoteSummary> summaries) {
+        List<Integer> ids = new ArrayList<>();
+        for(NoteSummary summary : summaries) {
+            ids.add(summary.getId());
+        }
+        return ids;
+    }
+
+    private void assertAllQueriesMatch() {
+        List<Note> all = new ArrayList<>(notes.values());
+        for(int i = 0; i < 500; i++) {
+            String query;
+            if(i % 5 == 0) {
+                query = randomText(1 + random.nextInt(2));
+            }else {
+                String text = all.get(random.nextInt(all.size())).getNoteText();
+                int start = random.nextInt(text.length());
+                query = text.substring(start, Math.min(text.length(), start + 1 + random.nextInt(8)));
+            }
+            assertEquals(query, expected(query), actual(query));
+        }
+    }
+
+    private void putNote(int id) {
+        Note note = new Note();
+        note.setId(id);
+        note.setTitle(randomText(3));
+        note.setSubtitle(random.nextBoolean() ? randomText(2) : null);
+        note.setNoteText(randomText(5 + random.nextInt(30)));
+        note.setVersion(random.nextInt(10));
+        notes.put(id, note);
+        engine.put(note);
+    }
+
+    private String randomText(int words) {
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < words; i++) {
+            if(i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    private List<Integer> expected(String query) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        List<Integer> ids = new ArrayList<>();
+        for(int id = 2001; id >= 1; id--) {
+            Note note = notes.get(id);
+            if(note != null && (contains(note.getTitle(), needle)
+                    || contains(note.getSubtitle(), needle)
+                    || contains(note.getNoteText(), needle))) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static boolean contains(String text, String needle) {
+        return text != null && text.toLowerCase(Locale.ROOT).contains(needle);
+    }
+
+    private List<Integer> actual(String query) {
+        return ids(engine.search(query, Integer.MAX_VALUE));
+    }
+}